@@ -22,12 +22,15 @@
  * SOFTWARE.
  */
 
+import com.github.jengelman.gradle.plugins.shadow.tasks.ShadowJar
 import java.io.IOException
 
 plugins {
     id("com.adarshr.test-logger") version "4.0.0"
+    id("com.gradleup.shadow") version "9.0.0"
     id("jacoco")
     id("java-library")
+    id("me.champeau.jmh") version "0.7.3"
     id("org.barfuin.gradle.jacocolog") version "4.0.2"
     id("org.jreleaser") version "1.22.0"
     id("maven-publish")
@@ -71,12 +74,24 @@ dependencies {
         because("Starting in Gradle 9.0, this needs to be an explicitly declared dependency")
     }
 
+    jmhImplementation("org.junit.jupiter:junit-jupiter-api:$junitVersion") {
+        because("Benchmarks drive the extension directly, outside of JUnit")
+    }
+
     testImplementation("org.assertj:assertj-core:3.27.7")
     testImplementation("org.junit.jupiter:junit-jupiter:$junitVersion")
     testImplementation("org.junit.jupiter:junit-jupiter-params:${junitVersion}")
     testImplementation("org.junit.platform:junit-platform-launcher:${junitPlatformLauncherVersion}")
 }
 
+jmh {
+    jmhVersion = "1.37"
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("reports/jmh/results.json")
+    // Report bytes allocated per operation (gc.alloc.rate.norm) alongside the time.
+    profilers = listOf("gc")
+}
+
 
 jreleaser {
     project {
@@ -176,11 +191,20 @@ tasks {
             attributes(
                 "Implementation-Title" to "Junit5 System Exit",
                 "Implementation-Version" to archiveVersion,
-                "Premain-Class" to "com.ginsberg.junit.exit.agent.Junit5SystemExitAgent"
+                "Premain-Class" to "com.ginsberg.junit.exit.agent.AgentBootstrap",
+                "Agent-Class" to "com.ginsberg.junit.exit.agent.AgentBootstrap",
+                "Can-Retransform-Classes" to "true"
             )
         }
     }
 
+    // A self-contained agent jar, with ASM relocated so it can't clash with another copy on the test class path.
+    named<ShadowJar>("shadowJar") {
+        archiveClassifier = "agent"
+        relocate("org.objectweb.asm", "com.ginsberg.junit.exit.shaded.org.objectweb.asm")
+        exclude("module-info.class")
+    }
+
     javadoc {
         (options as CoreJavadocOptions).apply {
             addStringOption("source", rootProject.java.toolchain.languageVersion.get().toString())
@@ -197,10 +221,14 @@ tasks {
 
     test {
         useJUnitPlatform()
-        dependsOn(jar)
+        val agentJar = named<ShadowJar>("shadowJar")
+        dependsOn(jar, agentJar)
         finalizedBy(jacocoTestReport)
         jvmArgumentProviders.add(CommandLineArgumentProvider {
-            listOf("-javaagent:${jar.get().archiveFile.get().asFile.absolutePath}")
+            listOf(
+                "-javaagent:${jar.get().archiveFile.get().asFile.absolutePath}",
+                "-Djunit5-system-exit.agentJar=${agentJar.get().archiveFile.get().asFile.absolutePath}"
+            )
         })
 
         doLast {
@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Just enough of an {@link ExtensionContext} to drive {@link SystemExitExtension} outside of JUnit. One context
+ * stands in for one test, with a single store shared by every namespace.
+ */
+final class BenchmarkExtensionContext {
+
+    private BenchmarkExtensionContext() {
+
+    }
+
+    static ExtensionContext create(final String uniqueId) {
+        final Map<Object, Object> values = new HashMap<>();
+        final ExtensionContext.Store store = (ExtensionContext.Store) Proxy.newProxyInstance(
+                ExtensionContext.Store.class.getClassLoader(),
+                new Class<?>[]{ExtensionContext.Store.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "get":
+                            return values.get(args[0]);
+                        case "put":
+                            values.put(args[0], args[1]);
+                            return null;
+                        case "remove":
+                            return values.remove(args[0]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }
+        );
+        return (ExtensionContext) Proxy.newProxyInstance(
+                ExtensionContext.class.getClassLoader(),
+                new Class<?>[]{ExtensionContext.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getTestMethod":
+                        case "getTestClass":
+                            return Optional.empty();
+                        case "getUniqueId":
+                            return uniqueId;
+                        case "getStore":
+                            return store;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }
+        );
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit;
+
+import com.ginsberg.junit.exit.agent.AgentSystemExitHandlerStrategy;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the per-test overhead of {@link SystemExitExtension} for a test that expects <code>System.exit()</code>.
+ */
+@State(Scope.Thread)
+public class SystemExitExtensionBenchmark {
+
+    private SystemExitExtension extension;
+    private ExtensionContext context;
+
+    @Setup
+    public void setup() {
+        AgentSystemExitHandlerStrategy.agentInit();
+        extension = new SystemExitExtension();
+        context = BenchmarkExtensionContext.create("[engine:benchmark]/[method:expectsExit()]");
+    }
+
+    @Benchmark
+    public void expectedExit() throws Throwable {
+        extension.beforeEach(context);
+        try {
+            AgentSystemExitHandlerStrategy.handleExit(1);
+        } catch (final SystemExitPreventedException e) {
+            extension.handleTestExecutionException(context, e);
+        }
+        extension.afterEach(context);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Class files to feed the transformer in benchmarks, read as bytes so they are never loaded or rewritten.
+ */
+final class ClassCorpus {
+
+    final List<String> names = new ArrayList<>();
+    final List<byte[]> classes = new ArrayList<>();
+
+    private ClassCorpus() {
+
+    }
+
+    /**
+     * Every class in the jars containing the given classes. Library code like this rarely calls
+     * <code>System.exit()</code>, and makes up most of what a test JVM loads.
+     */
+    static ClassCorpus fromJarsOf(final Class<?>... classes) {
+        final ClassCorpus corpus = new ClassCorpus();
+        for (final Class<?> clazz : classes) {
+            try (final ZipFile jar = new ZipFile(Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).toFile())) {
+                for (final ZipEntry entry : Collections.list(jar.entries())) {
+                    final String name = entry.getName();
+                    if (name.endsWith(".class") && !name.endsWith("module-info.class") && !name.startsWith("META-INF/")) {
+                        try (final InputStream in = jar.getInputStream(entry)) {
+                            corpus.add(name.substring(0, name.length() - ".class".length()), in.readAllBytes());
+                        }
+                    }
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (final URISyntaxException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return corpus;
+    }
+
+    static ClassCorpus of(final Class<?>... classes) {
+        final ClassCorpus corpus = new ClassCorpus();
+        for (final Class<?> clazz : classes) {
+            final String name = clazz.getName().replace('.', '/');
+            try (final InputStream in = clazz.getResourceAsStream("/" + name + ".class")) {
+                corpus.add(name, in.readAllBytes());
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return corpus;
+    }
+
+    int size() {
+        return classes.size();
+    }
+
+    private void add(final String name, final byte[] bytes) {
+        names.add(name);
+        classes.add(bytes);
+    }
+}
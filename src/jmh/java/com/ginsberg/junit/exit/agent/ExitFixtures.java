@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Classes that call <code>System.exit()</code>, shaped like typical command line applications. These are only
+ * ever read as bytes by benchmarks, never run.
+ */
+final class ExitFixtures {
+
+    private ExitFixtures() {
+
+    }
+
+    static final class CommandLine {
+        public static void main(final String[] args) {
+            if (args.length == 0) {
+                usage();
+                System.exit(2);
+            }
+            try {
+                run(args);
+                System.exit(0);
+            } catch (final RuntimeException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        private static void usage() {
+            System.err.println("Usage: CommandLine <file>...");
+        }
+
+        private static void run(final String[] args) {
+            for (final String arg : args) {
+                if (arg.isEmpty()) {
+                    throw new IllegalArgumentException("Empty argument");
+                }
+            }
+        }
+    }
+
+    static final class ShutdownHandler {
+        private final IntConsumer exit = System::exit;
+
+        void shutdown(final boolean clean) {
+            exit.accept(clean ? 0 : 1);
+        }
+
+        void halt() {
+            System.exit(-1);
+        }
+    }
+
+    static final class Validator {
+        static int validate(final String value) {
+            if (value == null) {
+                System.exit(3);
+            }
+            return value.length();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.SystemExitPreventedException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the cost of a prevented <code>System.exit()</code>, from the rewritten call site until the exception
+ * is caught by the caller.
+ */
+@State(Scope.Thread)
+public class HandleExitBenchmark {
+
+    @Param({"true", "false"})
+    public boolean stackTraces;
+
+    private final AgentSystemExitHandlerStrategy strategy = new AgentSystemExitHandlerStrategy();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        AgentSystemExitHandlerStrategy.agentInit();
+        AgentSystemExitHandlerStrategy.captureStackTraces(stackTraces);
+        strategy.beforeTest();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        strategy.afterTest();
+        strategy.resetBetweenTests();
+    }
+
+    @Benchmark
+    public int handleExit() {
+        try {
+            AgentSystemExitHandlerStrategy.handleExit(1);
+            throw new IllegalStateException("System.exit() was not prevented");
+        } catch (final SystemExitPreventedException e) {
+            return e.getStatusCode();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures how long the agent spends on each class as it is loaded.
+ * <p>
+ * The results include the bytes allocated per operation (<code>gc.alloc.rate.norm</code>), from the
+ * <code>gc</code> profiler. <code>rewriteCorpus</code> allocates a new ASM <code>ClassReader</code> and
+ * <code>ClassWriter</code> for every class, because ASM can't reset them for another class.
+ */
+@State(Scope.Benchmark)
+public class TransformerBenchmark {
+
+    @Param({"withoutExit", "withExit"})
+    public String corpusName;
+
+    private ClassCorpus corpus;
+    private Junit5SystemExitAgent.SystemExitClassTransformer transformer;
+    private final ClassLoader loader = TransformerBenchmark.class.getClassLoader();
+
+    @Setup
+    public void setup() {
+        corpus = corpusName.equals("withExit") ?
+                ClassCorpus.of(ExitFixtures.CommandLine.class, ExitFixtures.ShutdownHandler.class, ExitFixtures.Validator.class) :
+                ClassCorpus.fromJarsOf(ClassReader.class, Test.class);
+        transformer = Junit5SystemExitAgent.createTransformer(AgentOptions.parse(null));
+    }
+
+    @Benchmark
+    public void transformCorpus(final Blackhole blackhole) {
+        for (int i = 0; i < corpus.size(); i++) {
+            blackhole.consume(transformer.transform(loader, corpus.names.get(i), null, null, corpus.classes.get(i)));
+        }
+    }
+
+    // The transformer hands back classes it has already rewritten, so this measures the cost of rewriting itself.
+    @Benchmark
+    public void rewriteCorpus(final Blackhole blackhole) {
+        for (int i = 0; i < corpus.size(); i++) {
+            blackhole.consume(Junit5SystemExitAgent.rewrite(
+                    corpus.names.get(i),
+                    corpus.classes.get(i),
+                    CallSiteMode.INVOKE_STATIC
+            ));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit;
+
+import java.time.Instant;
+
+/**
+ * A record of one prevented call to <code>System.exit()</code>.
+ * <p>
+ * The caller is captured as a single stack frame rather than a full stack trace, and its details are only
+ * resolved when asked for.
+ */
+public class ExitAttempt {
+
+    private final int statusCode;
+    private final String threadName;
+    private final long timestampMillis;
+    private final StackWalker.StackFrame caller;
+
+    /**
+     * @param statusCode the status code passed to <code>System.exit()</code>
+     * @param thread     the thread that called <code>System.exit()</code>
+     * @param caller     the frame that called <code>System.exit()</code>, or null if unknown
+     */
+    public ExitAttempt(final int statusCode, final Thread thread, final StackWalker.StackFrame caller) {
+        this.statusCode = statusCode;
+        this.threadName = thread.getName();
+        this.timestampMillis = System.currentTimeMillis();
+        this.caller = caller;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public Instant getTimestamp() {
+        return Instant.ofEpochMilli(timestampMillis);
+    }
+
+    /**
+     * @return the fully qualified name of the class that called <code>System.exit()</code>, or null if unknown
+     */
+    public String getCallerClassName() {
+        return caller == null ? null : caller.getClassName();
+    }
+
+    /**
+     * @return the name of the method that called <code>System.exit()</code>, or null if unknown
+     */
+    public String getCallerMethodName() {
+        return caller == null ? null : caller.getMethodName();
+    }
+
+    /**
+     * @return the line number that called <code>System.exit()</code>, or a negative number if unknown
+     */
+    public int getCallerLineNumber() {
+        return caller == null ? -1 : caller.getLineNumber();
+    }
+
+    @Override
+    public String toString() {
+        return "System.exit(" + statusCode + ") on thread " + threadName +
+                (caller == null ? "" : " at " + caller.toStackTraceElement());
+    }
+}
@@ -23,10 +23,19 @@
  */
 package com.ginsberg.junit.exit;
 
+import java.util.List;
+
 public interface ExitPreventerStrategy {
 
     Integer firstExitStatusCode();
 
+    /**
+     * @return every prevented call to <code>System.exit()</code> since the last reset, in the order they happened
+     */
+    default List<ExitAttempt> exitAttempts() {
+        return List.of();
+    }
+
     default void beforeTest() {
     }
 
@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit;
+
+import com.ginsberg.junit.exit.agent.AgentSystemExitHandlerStrategy;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Carries the current test's <code>System.exit()</code> capture over to work run on other threads.
+ * <p>
+ * Threads started while a test is running, including virtual threads, already belong to that test. Threads that
+ * existed before the test started (a shared executor, the common fork-join pool, an event loop) do not, so work
+ * handed to them should be wrapped with one of these methods. When the current thread is not part of a running
+ * test, tasks are returned unchanged.
+ */
+public final class SystemExitContext {
+
+    private SystemExitContext() {
+
+    }
+
+    /**
+     * @return a task that runs the given task as part of the test running now
+     */
+    public static Runnable wrap(final Runnable task) {
+        final AgentSystemExitHandlerStrategy strategy = AgentSystemExitHandlerStrategy.forCurrentThread();
+        if (strategy == null) {
+            return task;
+        }
+        return () -> {
+            final AgentSystemExitHandlerStrategy previous = AgentSystemExitHandlerStrategy.bindToCurrentThread(strategy);
+            try {
+                task.run();
+            } finally {
+                AgentSystemExitHandlerStrategy.bindToCurrentThread(previous);
+            }
+        };
+    }
+
+    /**
+     * @return a task that runs the given task as part of the test running now
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task) {
+        final AgentSystemExitHandlerStrategy strategy = AgentSystemExitHandlerStrategy.forCurrentThread();
+        if (strategy == null) {
+            return task;
+        }
+        return () -> {
+            final AgentSystemExitHandlerStrategy previous = AgentSystemExitHandlerStrategy.bindToCurrentThread(strategy);
+            try {
+                return task.call();
+            } finally {
+                AgentSystemExitHandlerStrategy.bindToCurrentThread(previous);
+            }
+        };
+    }
+
+    /**
+     * Wrap an executor so each task runs as part of whichever test submitted it. The executor may be created once
+     * and shared between tests, for example to pass to <code>CompletableFuture.supplyAsync()</code>.
+     */
+    public static Executor wrap(final Executor executor) {
+        return command -> executor.execute(wrap(command));
+    }
+}
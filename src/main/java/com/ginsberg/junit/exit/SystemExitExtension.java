@@ -24,6 +24,7 @@
 
 package com.ginsberg.junit.exit;
 
+import com.ginsberg.junit.exit.agent.AgentAttacher;
 import com.ginsberg.junit.exit.agent.AgentSystemExitHandlerStrategy;
 import com.ginsberg.junit.exit.agent.DoNotRewriteExitCalls;
 import org.junit.jupiter.api.extension.AfterEachCallback;
@@ -32,6 +33,7 @@ import org.junit.jupiter.api.extension.ExtensionContext;
 import org.junit.jupiter.api.extension.TestExecutionExceptionHandler;
 
 import java.lang.annotation.Annotation;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -45,27 +47,31 @@ import static org.junit.platform.commons.support.AnnotationSupport.findAnnotatio
  */
 @DoNotRewriteExitCalls
 public class SystemExitExtension implements BeforeEachCallback, AfterEachCallback, TestExecutionExceptionHandler {
-    private Integer expectedStatusCode;
-    private boolean failOnSystemExit;
-    private final ExitPreventerStrategy exitPreventerStrategy;
+    // JUnit may share one instance of this extension between tests running in parallel, so all per-test
+    // state lives in the test's store rather than in fields.
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(SystemExitExtension.class);
+    private static final String EXPECTED_STATUS_CODE = "expectedStatusCode";
+    private static final String FAIL_ON_SYSTEM_EXIT = "failOnSystemExit";
+    private static final String EXIT_PREVENTER_STRATEGY = "exitPreventerStrategy";
 
     public SystemExitExtension() {
-        if(AgentSystemExitHandlerStrategy.isLoadedFromAgent()) {
-            exitPreventerStrategy = new AgentSystemExitHandlerStrategy();
-        } else {
-            throw new IllegalStateException("SystemExitExtension Agent not loaded, please see documentation");
-        }
+        AgentAttacher.requireAgent();
     }
 
     @Override
     public void afterEach(ExtensionContext context) {
+        final ExtensionContext.Store store = context.getStore(NAMESPACE);
+        final ExitPreventerStrategy exitPreventerStrategy = store.get(EXIT_PREVENTER_STRATEGY, ExitPreventerStrategy.class);
+        final Integer expectedStatusCode = store.get(EXPECTED_STATUS_CODE, Integer.class);
+        final boolean failOnSystemExit = Boolean.TRUE.equals(store.get(FAIL_ON_SYSTEM_EXIT, Boolean.class));
         exitPreventerStrategy.afterTest();
 
         try {
             if (failOnSystemExit) {
                 assertNull(
                         exitPreventerStrategy.firstExitStatusCode(),
-                        "Unexpected System.exit(" + exitPreventerStrategy.firstExitStatusCode() + ") caught"
+                        () -> "Unexpected System.exit(" + exitPreventerStrategy.firstExitStatusCode() + ") caught" +
+                                describeFirstAttempt(exitPreventerStrategy)
                 );
             } else if (expectedStatusCode == null) {
                 assertNotNull(
@@ -76,25 +82,33 @@ public class SystemExitExtension implements BeforeEachCallback, AfterEachCallbac
                 assertEquals(
                         expectedStatusCode,
                         exitPreventerStrategy.firstExitStatusCode(),
-                        "Expected System.exit(" + expectedStatusCode + ") to be called, but it was not."
+                        () -> "Expected System.exit(" + expectedStatusCode + ") to be called, but it was not." +
+                                describeFirstAttempt(exitPreventerStrategy)
                 );
             }
         } finally {
             // Clear state so if this is run as part of a @ParameterizedTest, the next time through we'll have the
             // correct state
-            expectedStatusCode = null;
-            failOnSystemExit = false;
+            store.remove(EXPECTED_STATUS_CODE);
+            store.remove(FAIL_ON_SYSTEM_EXIT);
+            store.remove(EXIT_PREVENTER_STRATEGY);
             exitPreventerStrategy.resetBetweenTests();
         }
     }
 
     @Override
     public void beforeEach(final ExtensionContext context) {
+        final ExtensionContext.Store store = context.getStore(NAMESPACE);
+
         // Should we fail on a System.exit() rather than letting it bubble out?
-        failOnSystemExit = getAnnotation(context, FailOnSystemExit.class).isPresent();
+        store.put(FAIL_ON_SYSTEM_EXIT, getAnnotation(context, FailOnSystemExit.class).isPresent());
 
         // Get the expected exit status code, if any
-        getAnnotation(context, ExpectSystemExitWithStatus.class).ifPresent(code -> expectedStatusCode = code.value());
+        getAnnotation(context, ExpectSystemExitWithStatus.class).ifPresent(code -> store.put(EXPECTED_STATUS_CODE, code.value()));
+
+        // Each test gets its own strategy, so tests running in parallel don't see each other's exits
+        final ExitPreventerStrategy exitPreventerStrategy = new AgentSystemExitHandlerStrategy(context.getUniqueId());
+        store.put(EXIT_PREVENTER_STRATEGY, exitPreventerStrategy);
 
         // Allow the strategy to do pre-test housekeeping
         exitPreventerStrategy.beforeTest();
@@ -119,6 +133,12 @@ public class SystemExitExtension implements BeforeEachCallback, AfterEachCallbac
         }
     }
 
+    // Where the first exit came from, if known, to help diagnose a failing test.
+    private static String describeFirstAttempt(final ExitPreventerStrategy exitPreventerStrategy) {
+        final List<ExitAttempt> attempts = exitPreventerStrategy.exitAttempts();
+        return attempts.isEmpty() ? "" : " First call was " + attempts.get(0);
+    }
+
     // Find the annotation on a method, or failing that, a class.
     private <T extends Annotation> Optional<T> getAnnotation(
             final ExtensionContext context,
@@ -30,9 +30,30 @@ package com.ginsberg.junit.exit;
 public class SystemExitPreventedException extends SecurityException {
 
     private final int statusCode;
+    private final boolean writableStackTrace;
 
     public SystemExitPreventedException(int statusCode) {
+        this(statusCode, true);
+    }
+
+    /**
+     * @param statusCode         the status code passed to <code>System.exit()</code>
+     * @param writableStackTrace whether to capture a stack trace, which is most of the cost of creating this
+     *                           exception. Tests that prevent many exits may want to turn this off.
+     */
+    public SystemExitPreventedException(final int statusCode, final boolean writableStackTrace) {
         this.statusCode = statusCode;
+        this.writableStackTrace = writableStackTrace;
+        if (writableStackTrace) {
+            fillInStackTrace();
+        }
+    }
+
+    // The superclass constructor calls this before our fields are set, so the stack trace is filled in (or not)
+    // by our own constructor instead.
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return writableStackTrace ? super.fillInStackTrace() : this;
     }
 
     public int getStatusCode() {
@@ -0,0 +1,199 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the agent into the running JVM the first time it is needed, so JVMs that never run a test that calls
+ * <code>System.exit()</code> don't pay for it. Test JVMs started with <code>-javaagent</code>, or running classes
+ * rewritten ahead of time, don't need this at all.
+ * <p>
+ * The JVM only allows an agent to attach to itself when started with <code>-Djdk.attach.allowAttachSelf=true</code>.
+ * Otherwise, a short-lived helper JVM attaches on our behalf.
+ * <p>
+ * Agent options may be given in the <code>junit5-system-exit.agentOptions</code> system property, in the same form as
+ * on the command line. The helper JVM is given <code>junit5-system-exit.attachTimeout</code> seconds (30 by default)
+ * to attach.
+ */
+@DoNotRewriteExitCalls
+public final class AgentAttacher {
+
+    private final static Logger log = Logger.getLogger(AgentAttacher.class.getName());
+    static final String OPTIONS_PROPERTY = "junit5-system-exit.agentOptions";
+    static final String TIMEOUT_PROPERTY = "junit5-system-exit.attachTimeout";
+    static final String AGENT_NOT_LOADED = "SystemExitExtension Agent not loaded, please see documentation";
+    private static final long DEFAULT_TIMEOUT_SECONDS = 30;
+
+    private static volatile boolean attempted = false;
+
+    private AgentAttacher() {
+
+    }
+
+    /**
+     * Attach the agent unless it is already loaded, or classes have been rewritten ahead of time.
+     *
+     * @return true if calls to <code>System.exit()</code> will be rewritten
+     */
+    public static boolean ensureAgentLoaded() {
+        if (isReady()) {
+            return true;
+        }
+        synchronized (AgentAttacher.class) {
+            if (!attempted) {
+                attempted = true;
+                attach();
+            }
+        }
+        return isReady();
+    }
+
+    /**
+     * Attach the agent if needed, as {@link #ensureAgentLoaded()} does.
+     *
+     * @throws IllegalStateException if calls to <code>System.exit()</code> won't be rewritten
+     */
+    public static void requireAgent() {
+        if (!ensureAgentLoaded()) {
+            throw new IllegalStateException(AGENT_NOT_LOADED);
+        }
+    }
+
+    private static boolean isReady() {
+        return AgentSystemExitHandlerStrategy.isLoadedFromAgent() || AgentSystemExitHandlerStrategy.isInstrumentedOffline();
+    }
+
+    private static void attach() {
+        if (ModuleLayer.boot().findModule("jdk.attach").isEmpty()) {
+            // The helper would run on the same JDK, so it couldn't attach either.
+            log.warning("Unable to attach the agent, this JVM doesn't include the jdk.attach module. Add the agent with -javaagent instead.");
+            return;
+        }
+        final String pid = String.valueOf(ProcessHandle.current().pid());
+        final String options = System.getProperty(OPTIONS_PROPERTY, "");
+        final Path agentJar;
+        try {
+            agentJar = createAgentJar();
+        } catch (final IOException e) {
+            log.log(Level.WARNING, "Unable to create a jar to attach the agent with", e);
+            return;
+        }
+        try {
+            try {
+                AttachApi.loadAgent(pid, agentJar.toString(), options);
+                return;
+            } catch (final Exception e) {
+                log.log(Level.FINE, "Unable to attach to this JVM directly, trying a helper process", e);
+            }
+            attachFromHelper(pid, agentJar, options);
+        } finally {
+            try {
+                Files.deleteIfExists(agentJar);
+            } catch (final IOException e) {
+                agentJar.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private static void attachFromHelper(final String pid, final Path agentJar, final String options) {
+        final Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        final String classPath = libraryLocation();
+        if (classPath == null) {
+            log.warning("Unable to find this library's location to start a helper process");
+            return;
+        }
+        final long timeoutSeconds = Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_SECONDS);
+        log.info("Attaching the agent from a helper process, waiting up to " + timeoutSeconds + " seconds. " +
+                "Add the agent with -javaagent, or start the JVM with -Djdk.attach.allowAttachSelf=true, to avoid this.");
+        try {
+            final Process helper = new ProcessBuilder(
+                    List.of(java.toString(), "-cp", classPath, AgentAttacher.class.getName(), pid, agentJar.toString(), options)
+            ).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            if (!helper.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                helper.destroyForcibly();
+                log.warning("Timed out waiting for a helper process to attach the agent, after " + timeoutSeconds +
+                        " seconds. The timeout can be raised with -D" + TIMEOUT_PROPERTY + "=<seconds>.");
+            } else if (helper.exitValue() != 0) {
+                log.warning("Helper process was unable to attach the agent, exit code " + helper.exitValue());
+            }
+        } catch (final IOException e) {
+            log.log(Level.WARNING, "Unable to start a helper process to attach the agent", e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The agent is loaded from a jar that holds nothing but a manifest naming the agent class. That class is found
+     * on the class path the same way it was found for the test, so the agent shares its state with the extension
+     * rather than loading a second copy.
+     */
+    private static Path createAgentJar() throws IOException {
+        final Manifest manifest = new Manifest();
+        final Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.put(new Attributes.Name("Agent-Class"), AgentBootstrap.class.getName());
+        attributes.put(new Attributes.Name("Can-Retransform-Classes"), "true");
+        final Path jar = Files.createTempFile("junit5-system-exit-agent", ".jar");
+        new JarOutputStream(Files.newOutputStream(jar), manifest).close();
+        return jar;
+    }
+
+    private static String libraryLocation() {
+        final CodeSource codeSource = AgentAttacher.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return null;
+        }
+        try {
+            return Paths.get(codeSource.getLocation().toURI()).toString();
+        } catch (final URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Entry point for the helper process.
+     * <p>
+     * Usage: <code>AgentAttacher &lt;pid&gt; &lt;agent jar&gt; [options]</code>
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: AgentAttacher <pid> <agent jar> [options]");
+        }
+        AttachApi.loadAgent(args[0], args[1], args.length > 2 ? args[2] : "");
+    }
+}
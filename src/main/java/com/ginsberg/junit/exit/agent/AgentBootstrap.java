@@ -0,0 +1,139 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The entry point named in the agent jar's manifest. Most classes loaded by a test JVM don't call
+ * <code>System.exit()</code>, so this waits for the first one that does before starting
+ * {@link Junit5SystemExitAgent}, which brings in ASM, logging and the rest of the agent. Until then, each class
+ * costs a prefix check and a scan of its constant pool.
+ * <p>
+ * Options that need the agent running from the start (<code>preload</code>, <code>restore</code>,
+ * <code>jmx</code> and <code>summary</code>) start it straight away.
+ * <p>
+ * Nothing here may refer to ASM or JUnit, or log unless the agent fails to start.
+ */
+public final class AgentBootstrap {
+
+    // Calls System.exit() itself, but is never rewritten. Loading it shouldn't be what starts the agent.
+    private static final String HANDLER_CLASS = "com/ginsberg/junit/exit/agent/AgentSystemExitHandlerStrategy";
+
+    private static volatile boolean installed = false;
+
+    private AgentBootstrap() {
+
+    }
+
+    public static void premain(final String agentArgs, final Instrumentation inst) {
+        final AgentOptions options = AgentOptions.parse(agentArgs);
+        installed = true;
+        if (startsImmediately(options)) {
+            Junit5SystemExitAgent.premain(agentArgs, inst);
+        } else {
+            inst.addTransformer(new LazyTransformer(options));
+        }
+    }
+
+    public static void agentmain(final String agentArgs, final Instrumentation inst) {
+        Junit5SystemExitAgent.agentmain(agentArgs, inst);
+    }
+
+    /**
+     * @return true if the agent was started with <code>-javaagent</code>, whether or not it has needed to rewrite
+     * anything yet
+     */
+    static boolean isInstalled() {
+        return installed;
+    }
+
+    private static boolean startsImmediately(final AgentOptions options) {
+        return options.getBoolean(AgentOptions.PRELOAD, false) ||
+                options.getBoolean(AgentOptions.RESTORE, false) ||
+                options.getBoolean(AgentOptions.JMX, false) ||
+                options.getBoolean(AgentOptions.SUMMARY, false);
+    }
+
+    /**
+     * Hands every class to the real transformer once it has started, and starts it the first time a class that
+     * may need rewriting is loaded.
+     */
+    static class LazyTransformer implements ClassFileTransformer {
+        private final AgentOptions options;
+        private final ClassFilter filter;
+        private volatile Junit5SystemExitAgent.SystemExitClassTransformer transformer;
+        private boolean starting = false;
+
+        LazyTransformer(final AgentOptions options) {
+            this.options = options;
+            this.filter = ClassFilter.of(options);
+        }
+
+        @Override
+        public byte[] transform(final ClassLoader loader,
+                                final String className,
+                                final Class<?> classBeingRedefined,
+                                final ProtectionDomain protectionDomain,
+                                final byte[] classFileBuffer) {
+            Junit5SystemExitAgent.SystemExitClassTransformer current = transformer;
+            if (current == null) {
+                if (HANDLER_CLASS.equals(className) || !filter.mayRewrite(loader, className, protectionDomain, classFileBuffer)) {
+                    return null;
+                }
+                current = start(className);
+                if (current == null) {
+                    return null;
+                }
+            }
+            return current.transform(loader, className, classBeingRedefined, protectionDomain, classFileBuffer);
+        }
+
+        Junit5SystemExitAgent.SystemExitClassTransformer startAgent() {
+            return Junit5SystemExitAgent.start(options);
+        }
+
+        // Starting the agent loads classes, which come back through here on this thread while it is starting.
+        private synchronized Junit5SystemExitAgent.SystemExitClassTransformer start(final String className) {
+            if (transformer == null && !starting) {
+                starting = true;
+                try {
+                    transformer = startAgent();
+                } catch (final RuntimeException | LinkageError e) {
+                    // The JVM ignores anything a transformer throws, so this is the only sign of why nothing is rewritten.
+                    // The next class that calls System.exit() tries again.
+                    Logger.getLogger(AgentBootstrap.class.getName())
+                            .log(Level.WARNING, "Unable to start the agent, not rewriting " + className, e);
+                } finally {
+                    starting = false;
+                }
+            }
+            return transformer;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+/**
+ * Flight Recorder events from the agent, which are disabled unless turned on in the recording's settings (see
+ * <code>junit5-system-exit.jfc</code>). When they are disabled, or the JVM doesn't include the <code>jdk.jfr</code>
+ * module, each check is a single field read and nothing is allocated.
+ */
+final class AgentEvents {
+
+    private static final boolean jfrAvailable = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private AgentEvents() {
+
+    }
+
+    static boolean isTransformEnabled() {
+        return jfrAvailable && JfrEvents.isTransformEnabled();
+    }
+
+    /**
+     * @return an event handle to pass to {@link #commitTransform}. Only call when {@link #isTransformEnabled()}.
+     */
+    static Object beginTransform() {
+        return JfrEvents.beginTransform();
+    }
+
+    static void commitTransform(final Object event, final String className, final int bytesIn, final byte[] bytesOut) {
+        JfrEvents.commitTransform(event, className, bytesIn, bytesOut);
+    }
+
+    static boolean isExitPreventedEnabled() {
+        return jfrAvailable && JfrEvents.isExitPreventedEnabled();
+    }
+
+    static void exitPrevented(final int statusCode, final StackWalker.StackFrame caller, final String testId) {
+        JfrEvents.exitPrevented(statusCode, caller == null ? null : caller.toString(), testId);
+    }
+}
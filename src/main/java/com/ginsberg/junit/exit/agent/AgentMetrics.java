@@ -0,0 +1,169 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Counters kept by the agent. These are striped, so classes loaded concurrently don't contend on them.
+ */
+final class AgentMetrics implements AgentMetricsMXBean {
+
+    private final static Logger log = Logger.getLogger(AgentMetrics.class.getName());
+    static final String OBJECT_NAME = "com.ginsberg.junit.exit:type=AgentMetrics";
+    private static final AgentMetrics metrics = new AgentMetrics();
+
+    private final LongAdder classesSeen = new LongAdder();
+    private final LongAdder classesFiltered = new LongAdder();
+    private final LongAdder classesScanned = new LongAdder();
+    private final LongAdder classesRewritten = new LongAdder();
+    private final LongAdder callSitesRewritten = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder transformNanosTotal = new LongAdder();
+    private final LongAccumulator transformNanosMax = new LongAccumulator(Math::max, 0);
+    private final Map<Integer, LongAdder> preventedExits = new ConcurrentHashMap<>();
+
+    private AgentMetrics() {
+
+    }
+
+    static AgentMetrics metrics() {
+        return metrics;
+    }
+
+    void classSeen() {
+        classesSeen.increment();
+    }
+
+    void classFiltered() {
+        classesFiltered.increment();
+    }
+
+    void classScanned() {
+        classesScanned.increment();
+    }
+
+    void classRewritten(final int callSites) {
+        classesRewritten.increment();
+        callSitesRewritten.add(callSites);
+    }
+
+    void cacheHit() {
+        cacheHits.increment();
+    }
+
+    void transformed(final long nanos) {
+        transformNanosTotal.add(nanos);
+        transformNanosMax.accumulate(nanos);
+    }
+
+    void exitPrevented(final int statusCode) {
+        preventedExits.computeIfAbsent(statusCode, code -> new LongAdder()).increment();
+    }
+
+    @Override
+    public long getClassesSeen() {
+        return classesSeen.sum();
+    }
+
+    @Override
+    public long getClassesFiltered() {
+        return classesFiltered.sum();
+    }
+
+    @Override
+    public long getClassesScanned() {
+        return classesScanned.sum();
+    }
+
+    @Override
+    public long getClassesRewritten() {
+        return classesRewritten.sum();
+    }
+
+    @Override
+    public long getCallSitesRewritten() {
+        return callSitesRewritten.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getTransformNanosTotal() {
+        return transformNanosTotal.sum();
+    }
+
+    @Override
+    public long getTransformNanosMax() {
+        return transformNanosMax.get();
+    }
+
+    @Override
+    public Map<Integer, Long> getPreventedExits() {
+        final Map<Integer, Long> counts = new TreeMap<>();
+        preventedExits.forEach((code, count) -> counts.put(code, count.sum()));
+        return counts;
+    }
+
+    /**
+     * @return everything on one line, as printed at shutdown when the agent is started with <code>summary=true</code>
+     */
+    String summary() {
+        return "junit5-system-exit: " +
+                "classes seen=" + getClassesSeen() +
+                ", filtered=" + getClassesFiltered() +
+                ", scanned=" + getClassesScanned() +
+                ", rewritten=" + getClassesRewritten() +
+                ", call sites rewritten=" + getCallSitesRewritten() +
+                ", cache hits=" + getCacheHits() +
+                ", transform time=" + TimeUnit.NANOSECONDS.toMillis(getTransformNanosTotal()) + "ms" +
+                " (max " + TimeUnit.NANOSECONDS.toMicros(getTransformNanosMax()) + "us)" +
+                ", prevented exits=" + getPreventedExits();
+    }
+
+    void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (final JMException e) {
+            log.log(Level.WARNING, "Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    void printSummaryAtShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.println(summary()), "junit5-system-exit-summary"));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.util.Map;
+
+/**
+ * What the agent has done so far, registered as <code>com.ginsberg.junit.exit:type=AgentMetrics</code> when the
+ * agent is started with <code>jmx=true</code>.
+ */
+public interface AgentMetricsMXBean {
+
+    /**
+     * @return classes passed to the agent as they were loaded
+     */
+    long getClassesSeen();
+
+    /**
+     * @return classes skipped because of the <code>include</code> and <code>exclude</code> options, or the JDK
+     */
+    long getClassesFiltered();
+
+    /**
+     * @return classes whose constant pool was scanned for a reference to <code>System.exit()</code>
+     */
+    long getClassesScanned();
+
+    /**
+     * @return classes that were rewritten
+     */
+    long getClassesRewritten();
+
+    /**
+     * @return calls to <code>System.exit()</code> that were rewritten
+     */
+    long getCallSitesRewritten();
+
+    /**
+     * @return classes whose rewritten form was found in memory or in the <code>cacheDirectory</code>
+     */
+    long getCacheHits();
+
+    long getTransformNanosTotal();
+
+    long getTransformNanosMax();
+
+    /**
+     * @return how many calls to <code>System.exit()</code> were prevented, by status code
+     */
+    Map<Integer, Long> getPreventedExits();
+}
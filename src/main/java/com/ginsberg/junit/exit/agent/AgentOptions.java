@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Options passed to the agent on the command line, as a comma separated list of <code>key=value</code> pairs.
+ * Keys may be repeated when an option accepts more than one value.
+ * <p>
+ * For example: <code>-javaagent:junit5-system-exit.jar=cacheDirectory=build/exit-cache</code>
+ * <p>
+ * Options may also be read from a properties file given by the <code>config</code> option. In the file,
+ * options that accept more than one value are comma separated.
+ */
+final class AgentOptions {
+
+    static final String CACHE_DIRECTORY = "cacheDirectory";
+    static final String CALL_SITES = "callSites";
+    static final String CONFIG = "config";
+    static final String COVERAGE = "coverage";
+    static final String EXCLUDE = "exclude";
+    static final String EXCLUDE_CODE_SOURCE = "excludeCodeSource";
+    static final String INCLUDE = "include";
+    static final String INCLUDE_CODE_SOURCE = "includeCodeSource";
+    static final String JMX = "jmx";
+    static final String PRELOAD = "preload";
+    static final String RESTORE = "restore";
+    static final String STACK_TRACES = "stackTraces";
+    static final String SUMMARY = "summary";
+
+    private static final Set<String> knownOptions = Set.of(
+            CACHE_DIRECTORY,
+            CALL_SITES,
+            CONFIG,
+            COVERAGE,
+            EXCLUDE,
+            EXCLUDE_CODE_SOURCE,
+            INCLUDE,
+            INCLUDE_CODE_SOURCE,
+            JMX,
+            PRELOAD,
+            RESTORE,
+            STACK_TRACES,
+            SUMMARY
+    );
+
+    private final Map<String, List<String>> options;
+
+    private AgentOptions(final Map<String, List<String>> options) {
+        this.options = options;
+    }
+
+    static AgentOptions parse(final String agentArgs) {
+        final Map<String, List<String>> options = new HashMap<>();
+        if (agentArgs != null && !agentArgs.isBlank()) {
+            for (final String option : agentArgs.split(",")) {
+                if (option.isBlank()) {
+                    continue;
+                }
+                final int separator = option.indexOf('=');
+                if (separator < 1) {
+                    throw new IllegalArgumentException("Agent option must be in the form key=value: " + option);
+                }
+                final String key = option.substring(0, separator).trim();
+                final String value = option.substring(separator + 1).trim();
+                if (key.equals(CONFIG)) {
+                    readConfigFile(Paths.get(value), options);
+                }
+                add(options, key, value);
+            }
+        }
+        return new AgentOptions(options);
+    }
+
+    private static void readConfigFile(final Path path, final Map<String, List<String>> options) {
+        final Properties properties = new Properties();
+        try (final Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Unable to read agent config file: " + path, e);
+        }
+        for (final String key : properties.stringPropertyNames()) {
+            if (key.equals(CONFIG)) {
+                throw new IllegalArgumentException("Agent config files cannot refer to other config files: " + path);
+            }
+            for (final String value : properties.getProperty(key).split(",")) {
+                if (!value.isBlank()) {
+                    add(options, key, value.trim());
+                }
+            }
+        }
+    }
+
+    private static void add(final Map<String, List<String>> options, final String key, final String value) {
+        if (!knownOptions.contains(key)) {
+            throw new IllegalArgumentException("Unknown agent option: " + key);
+        }
+        options.computeIfAbsent(key, it -> new ArrayList<>()).add(value);
+    }
+
+    // The last value given wins, so options can be overridden by appending to them.
+    String get(final String key) {
+        final List<String> values = getAll(key);
+        return values.isEmpty() ? null : values.get(values.size() - 1);
+    }
+
+    List<String> getAll(final String key) {
+        return Collections.unmodifiableList(options.getOrDefault(key, List.of()));
+    }
+
+    // Class name prefixes may be given as package names (com.acme) or internal names (com/acme/). A package name
+    // covers that package and the packages below it, but not siblings that share its prefix, such as com.acmecorp.
+    List<String> getClassPrefixes(final String key) {
+        final List<String> prefixes = new ArrayList<>();
+        for (final String prefix : getAll(key)) {
+            if (prefix.isEmpty() || prefix.indexOf('/') >= 0) {
+                prefixes.add(prefix);
+            } else {
+                prefixes.add(prefix.replace('.', '/') + (prefix.endsWith(".") ? "" : "/"));
+            }
+        }
+        return prefixes;
+    }
+
+    boolean getBoolean(final String key, final boolean defaultValue) {
+        final String value = get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        } else if (value.equalsIgnoreCase("true")) {
+            return true;
+        } else if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Agent option " + key + " must be true or false: " + value);
+    }
+
+    CallSiteMode getCallSiteMode() {
+        final String value = get(CALL_SITES);
+        if (value == null || value.equalsIgnoreCase("invokeStatic")) {
+            return CallSiteMode.INVOKE_STATIC;
+        } else if (value.equalsIgnoreCase("invokeDynamic")) {
+            return CallSiteMode.INVOKE_DYNAMIC;
+        }
+        throw new IllegalArgumentException("Agent option " + CALL_SITES + " must be invokeStatic or invokeDynamic: " + value);
+    }
+
+    Path getPath(final String key) {
+        final String value = get(key);
+        return value == null || value.isEmpty() ? null : Paths.get(value);
+    }
+}
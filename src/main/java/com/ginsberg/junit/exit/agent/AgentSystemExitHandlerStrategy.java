@@ -24,52 +24,223 @@
 
 package com.ginsberg.junit.exit.agent;
 
+import com.ginsberg.junit.exit.ExitAttempt;
 import com.ginsberg.junit.exit.ExitPreventerStrategy;
 import com.ginsberg.junit.exit.SystemExitPreventedException;
 
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Captures calls to <code>System.exit()</code> that have been rewritten by the agent.
+ * <p>
+ * Each instance captures exits for one test. An instance is bound to the thread that calls {@link #beforeTest()}
+ * and to any threads started from that thread while the test runs, so tests running in parallel each see only
+ * their own exits. Exits from threads that don't belong to any test (a shared pool, for example) are attributed
+ * to the running test if there is only one. Otherwise, they are prevented but not recorded, unless the work was
+ * handed to the pool through {@link com.ginsberg.junit.exit.SystemExitContext}. Exits from threads that belong to
+ * a test that has finished are also prevented but not recorded.
+ */
 @DoNotRewriteExitCalls
 public class AgentSystemExitHandlerStrategy implements ExitPreventerStrategy {
 
-    private static Integer firstExitStatusCode;
-    private static boolean loadedFromAgent = false;
-    private static boolean isRunningTest = false;
+    /**
+     * A resource written by the {@link OfflineInstrumenter} alongside the classes it has rewritten.
+     */
+    public static final String OFFLINE_MARKER = "META-INF/junit5-system-exit/instrumented-offline";
+
+    private static final InheritableThreadLocal<AgentSystemExitHandlerStrategy> currentStrategy = new InheritableThreadLocal<>();
+    private static final Set<AgentSystemExitHandlerStrategy> runningStrategies = ConcurrentHashMap.newKeySet();
+    private static final StackWalker stackWalker = StackWalker.getInstance();
+    private static volatile Boolean instrumentedOffline;
+    private static volatile boolean loadedFromAgent = false;
+    private static volatile boolean captureStackTraces = true;
+
+    private final String testId;
+    private final AtomicReference<Integer> firstExitStatusCode = new AtomicReference<>();
+    private final Queue<ExitAttempt> exitAttempts = new ConcurrentLinkedQueue<>();
+    private volatile boolean isRunningTest = false;
+    private AgentSystemExitHandlerStrategy previousStrategy;
+
+    public AgentSystemExitHandlerStrategy() {
+        this(null);
+    }
+
+    /**
+     * @param testId identifies the test this strategy captures exits for, in diagnostics such as Flight Recorder
+     *               events
+     */
+    public AgentSystemExitHandlerStrategy(final String testId) {
+        this.testId = testId;
+    }
+
+    /**
+     * Called in place of <code>System.exit()</code> when the agent is recording coverage.
+     *
+     * @param callSiteId identifies the rewritten call, see <code>ExitCoverage</code>
+     */
+    public static void handleExit(final int status, final int callSiteId) {
+        ExitCoverage.hit(callSiteId);
+        handleExit(status);
+    }
 
     public static void handleExit(final int status) {
-        if(isRunningTest) {
-            if (firstExitStatusCode == null) {
-                firstExitStatusCode = status;
+        if (runningStrategies.isEmpty()) {
+            System.exit(status);
+        } else {
+            AgentMetrics.metrics().exitPrevented(status);
+            final AgentSystemExitHandlerStrategy strategy = findStrategy();
+            if (strategy == null) {
+                // Tests are running, but we can't tell which one this exit belongs to. Don't let the JVM exit under them.
+                if (AgentEvents.isExitPreventedEnabled()) {
+                    AgentEvents.exitPrevented(status, findCaller(), null);
+                }
+                throw new SystemExitPreventedException(status, captureStackTraces);
+            }
+            final StackWalker.StackFrame caller = findCaller();
+            strategy.firstExitStatusCode.compareAndSet(null, status);
+            strategy.exitAttempts.add(new ExitAttempt(status, Thread.currentThread(), caller));
+            if (AgentEvents.isExitPreventedEnabled()) {
+                AgentEvents.exitPrevented(status, caller, strategy.testId);
+            }
+            throw new SystemExitPreventedException(strategy.firstExitStatusCode.get(), captureStackTraces);
+        }
+    }
+
+    // Only walk as far as the first frame outside this class, rather than capturing the whole stack. Without stack
+    // traces, prevented exits are meant to be cheap, so the caller isn't looked for at all.
+    private static StackWalker.StackFrame findCaller() {
+        if (!captureStackTraces) {
+            return null;
+        }
+        final Optional<StackWalker.StackFrame> caller = stackWalker.walk(frames ->
+                frames.dropWhile(frame -> frame.getClassName().equals(AgentSystemExitHandlerStrategy.class.getName()))
+                        .findFirst()
+        );
+        return caller.orElse(null);
+    }
+
+    private static AgentSystemExitHandlerStrategy findStrategy() {
+        final AgentSystemExitHandlerStrategy bound = currentStrategy.get();
+        if (bound != null) {
+            // A thread left running by a test that has finished doesn't belong to whichever test is running now.
+            return bound.isRunningTest ? bound : null;
+        }
+        final Iterator<AgentSystemExitHandlerStrategy> running = runningStrategies.iterator();
+        if (running.hasNext()) {
+            final AgentSystemExitHandlerStrategy only = running.next();
+            if (!running.hasNext()) {
+                return only;
             }
-            throw new SystemExitPreventedException(firstExitStatusCode);
+        }
+        return null;
+    }
+
+    /**
+     * @return the strategy capturing exits for the current thread, or null if the current thread isn't part of a
+     * running test
+     */
+    public static AgentSystemExitHandlerStrategy forCurrentThread() {
+        final AgentSystemExitHandlerStrategy current = currentStrategy.get();
+        return current != null && current.isRunningTest ? current : null;
+    }
+
+    /**
+     * Attribute exits from the current thread to the given strategy, until another strategy is bound.
+     *
+     * @param strategy the strategy to bind, or null to unbind the current thread from any test
+     * @return the strategy previously bound to this thread, so it can be restored
+     */
+    public static AgentSystemExitHandlerStrategy bindToCurrentThread(final AgentSystemExitHandlerStrategy strategy) {
+        final AgentSystemExitHandlerStrategy previous = currentStrategy.get();
+        if (strategy == null) {
+            currentStrategy.remove();
         } else {
-            System.exit(status);
+            currentStrategy.set(strategy);
         }
+        return previous;
+    }
+
+    static boolean hasRunningTests() {
+        return !runningStrategies.isEmpty();
     }
 
     public static void agentInit() {
         loadedFromAgent = true;
     }
 
+    /**
+     * @param capture whether each {@link SystemExitPreventedException} should capture a stack trace, and each
+     *                {@link ExitAttempt} the frame that called <code>System.exit()</code>
+     */
+    static void captureStackTraces(final boolean capture) {
+        captureStackTraces = capture;
+    }
+
     public static boolean isLoadedFromAgent() {
-        return loadedFromAgent;
+        return loadedFromAgent || AgentBootstrap.isInstalled();
+    }
+
+    /**
+     * @return true if classes on the classpath were rewritten ahead of time by the {@link OfflineInstrumenter},
+     * in which case the agent is not required.
+     */
+    public static boolean isInstrumentedOffline() {
+        if (instrumentedOffline == null) {
+            final ClassLoader loader = AgentSystemExitHandlerStrategy.class.getClassLoader();
+            instrumentedOffline = (loader == null ? ClassLoader.getSystemResource(OFFLINE_MARKER) : loader.getResource(OFFLINE_MARKER)) != null;
+        }
+        return instrumentedOffline;
+    }
+
+    public String getTestId() {
+        return testId;
     }
 
     @Override
     public Integer firstExitStatusCode() {
-        return firstExitStatusCode;
+        return firstExitStatusCode.get();
+    }
+
+    @Override
+    public List<ExitAttempt> exitAttempts() {
+        return List.copyOf(exitAttempts);
     }
 
     @Override
     public void beforeTest() {
+        previousStrategy = currentStrategy.get();
+        currentStrategy.set(this);
         isRunningTest = true;
+        runningStrategies.add(this);
+        ExitCallSite.runningTestsChanged();
+        ExitClassRestorer.runningTestsChanged();
     }
 
     @Override
     public void afterTest() {
         isRunningTest = false;
+        runningStrategies.remove(this);
+        ExitCallSite.runningTestsChanged();
+        ExitClassRestorer.runningTestsChanged();
+        // Put back whatever was capturing before, in case one assertion is nested in another test.
+        if (previousStrategy == null) {
+            currentStrategy.remove();
+        } else {
+            currentStrategy.set(previousStrategy);
+            previousStrategy = null;
+        }
     }
 
     @Override
     public void resetBetweenTests() {
-        firstExitStatusCode = null;
+        firstExitStatusCode.set(null);
+        exitAttempts.clear();
     }
 }
@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides which classes the include and exclude options allow to be rewritten, by name and by the jar or
+ * directory they were loaded from. Used by {@link AgentBootstrap} to decide when the agent has to start, and by
+ * the agent itself to decide what to rewrite, so the two always agree.
+ * <p>
+ * Nothing here may log, or refer to ASM or JUnit.
+ */
+final class ClassFilter {
+
+    static final List<String> DISALLOWED_CLASS_PREFIXES = List.of(
+            "com/sun/", "java/", "jdk/", "worker/org/gradle/", "sun/"
+    );
+
+    private static final ClassLoader PLATFORM_LOADER = ClassLoader.getPlatformClassLoader();
+
+    private final PrefixMatcher includedClassPrefixes;
+    private final PrefixMatcher excludedClassPrefixes;
+    private final CodeSourceMatcher codeSources;
+
+    private ClassFilter(final PrefixMatcher includedClassPrefixes,
+                        final PrefixMatcher excludedClassPrefixes,
+                        final CodeSourceMatcher codeSources) {
+        this.includedClassPrefixes = includedClassPrefixes;
+        this.excludedClassPrefixes = excludedClassPrefixes;
+        this.codeSources = codeSources;
+    }
+
+    static ClassFilter of(final AgentOptions options) {
+        final List<String> excluded = new ArrayList<>(DISALLOWED_CLASS_PREFIXES);
+        excluded.addAll(options.getClassPrefixes(AgentOptions.EXCLUDE));
+        return new ClassFilter(
+                PrefixMatcher.of(options.getClassPrefixes(AgentOptions.INCLUDE)),
+                PrefixMatcher.of(excluded),
+                CodeSourceMatcher.of(
+                        options.getAll(AgentOptions.INCLUDE_CODE_SOURCE),
+                        options.getAll(AgentOptions.EXCLUDE_CODE_SOURCE)
+                )
+        );
+    }
+
+    /**
+     * @return false for the bootstrap and platform class loaders, which only load classes from the JDK
+     */
+    static boolean isApplicationLoader(final ClassLoader loader) {
+        return loader != null && loader != PLATFORM_LOADER;
+    }
+
+    /**
+     * @return true if this class may need rewriting: the options allow it, and it refers to <code>System.exit()</code>
+     */
+    boolean mayRewrite(final ClassLoader loader,
+                       final String className,
+                       final ProtectionDomain protectionDomain,
+                       final byte[] classFileBuffer) {
+        return isCandidate(loader, className) &&
+                ConstantPoolScanner.referencesSystemExit(classFileBuffer) &&
+                isIncluded(protectionDomain);
+    }
+
+    /**
+     * @return true if the include and exclude options allow this class, loaded by this class loader, to be rewritten
+     */
+    boolean isCandidate(final ClassLoader loader, final String className) {
+        return isApplicationLoader(loader) && isCandidate(className);
+    }
+
+    /**
+     * @return true if the include and exclude options allow this class to be rewritten
+     */
+    boolean isCandidate(final String className) {
+        return className != null &&
+                (includedClassPrefixes.isEmpty() || includedClassPrefixes.matches(className)) &&
+                !excludedClassPrefixes.matches(className);
+    }
+
+    /**
+     * @return true if the code source options allow classes from this protection domain's code source to be
+     * rewritten
+     */
+    boolean isIncluded(final ProtectionDomain protectionDomain) {
+        if (codeSources.isEmpty()) {
+            return true;
+        }
+        final CodeSource codeSource = protectionDomain == null ? null : protectionDomain.getCodeSource();
+        return codeSources.matches(codeSource == null ? null : codeSource.getLocation());
+    }
+
+    /**
+     * @param location the location of a code source, or null if the class doesn't have one
+     * @return true if the code source options allow classes from this location to be rewritten
+     */
+    boolean isIncluded(final URL location) {
+        return codeSources.matches(location);
+    }
+
+    /**
+     * @param entry a class path entry, either a directory or a jar
+     * @return true if the code source options allow classes from this entry to be rewritten
+     */
+    boolean isIncluded(final Path entry) {
+        return codeSources.matches(entry);
+    }
+}
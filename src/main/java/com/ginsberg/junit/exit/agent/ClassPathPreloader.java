@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Walks the class path on a low priority background thread, rewriting classes that call <code>System.exit()</code>
+ * before anything loads them, when the agent is started with <code>preload=true</code>. Test discovery and class
+ * loading carry on at the same time, and when one of these classes is loaded, the agent hands back the bytes it
+ * already prepared.
+ */
+final class ClassPathPreloader {
+
+    private final static Logger log = Logger.getLogger(ClassPathPreloader.class.getName());
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final Junit5SystemExitAgent.SystemExitClassTransformer transformer;
+
+    ClassPathPreloader(final Junit5SystemExitAgent.SystemExitClassTransformer transformer) {
+        this.transformer = transformer;
+    }
+
+    static void start(final Junit5SystemExitAgent.SystemExitClassTransformer transformer, final String classPath) {
+        final ClassPathPreloader preloader = new ClassPathPreloader(transformer);
+        final Thread thread = new Thread(() -> {
+            for (final String entry : classPath.split(File.pathSeparator)) {
+                if (!entry.isEmpty()) {
+                    preloader.preload(Paths.get(entry));
+                }
+            }
+        }, "junit5-system-exit-preloader");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * @param entry a class path entry, either a directory or a jar
+     */
+    void preload(final Path entry) {
+        if (!transformer.isIncluded(entry)) {
+            return;
+        }
+        try {
+            if (Files.isDirectory(entry)) {
+                preloadDirectory(entry);
+            } else if (Files.isRegularFile(entry)) {
+                preloadJar(entry);
+            }
+        } catch (final IOException | RuntimeException e) {
+            log.log(Level.FINE, "Unable to preload classes from " + entry, e);
+        }
+    }
+
+    private void preloadDirectory(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.filter(file -> file.toString().endsWith(CLASS_SUFFIX)).forEach(file -> {
+                final String name = directory.relativize(file).toString().replace(File.separatorChar, '/');
+                try {
+                    preloadClass(name, Files.readAllBytes(file));
+                } catch (final IOException e) {
+                    log.log(Level.FINE, "Unable to preload " + file, e);
+                }
+            });
+        }
+    }
+
+    private void preloadJar(final Path jar) throws IOException {
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                // Versioned classes may or may not be the ones this JVM loads, so leave them to the transformer.
+                if (entry.isDirectory() || !entry.getName().endsWith(CLASS_SUFFIX) || entry.getName().startsWith("META-INF/")) {
+                    continue;
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    preloadClass(entry.getName(), in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    private void preloadClass(final String fileName, final byte[] classFileBuffer) {
+        final String className = fileName.substring(0, fileName.length() - CLASS_SUFFIX.length());
+        if (className.endsWith("module-info") || className.endsWith("package-info")) {
+            return;
+        }
+        try {
+            transformer.preload(className, classFileBuffer);
+        } catch (final RuntimeException e) {
+            log.log(Level.FINE, "Unable to preload " + className, e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Determines whether classes from a code source, the jar or directory a class was loaded from, may be rewritten.
+ * Code sources are matched by their path against include and exclude globs. Globs that aren't absolute match
+ * anywhere in the path, so <code>build/classes/**</code> matches the class output of every project in a build.
+ */
+final class CodeSourceMatcher {
+
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+
+    private CodeSourceMatcher(final List<PathMatcher> includes, final List<PathMatcher> excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    static CodeSourceMatcher of(final Collection<String> includes, final Collection<String> excludes) {
+        return new CodeSourceMatcher(matchers(includes), matchers(excludes));
+    }
+
+    private static List<PathMatcher> matchers(final Collection<String> globs) {
+        final List<PathMatcher> matchers = new ArrayList<>();
+        for (final String glob : globs) {
+            final boolean anchored = glob.startsWith("/") || glob.startsWith("**") || glob.contains(":");
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + (anchored ? glob : "**/" + glob)));
+        }
+        return matchers;
+    }
+
+    boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    /**
+     * @param location the location of a code source, or null if the class doesn't have one
+     * @return true if classes from this location may be rewritten. Locations that aren't files, or are
+     * unknown, are only rewritten when no include globs are given.
+     */
+    boolean matches(final URL location) {
+        return matches(toPath(location));
+    }
+
+    /**
+     * @param path a jar or directory, or null if unknown
+     */
+    boolean matches(final Path path) {
+        if (path == null) {
+            return includes.isEmpty();
+        }
+        final Path absolute = path.toAbsolutePath();
+        return (includes.isEmpty() || anyMatch(includes, absolute)) && !anyMatch(excludes, absolute);
+    }
+
+    private static boolean anyMatch(final List<PathMatcher> matchers, final Path path) {
+        for (final PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Path toPath(final URL location) {
+        if (location == null || !location.getProtocol().equals("file")) {
+            return null;
+        }
+        try {
+            return Paths.get(location.toURI());
+        } catch (final URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
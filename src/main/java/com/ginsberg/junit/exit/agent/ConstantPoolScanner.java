@@ -0,0 +1,198 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the constant pool of a class file without parsing the rest of it, in order to determine whether the
+ * class could possibly call <code>System.exit()</code>. Any call to <code>System.exit()</code>, whether it is
+ * an <code>invokestatic</code> instruction or a <code>MethodHandle</code> (such as <code>System::exit</code>),
+ * requires a <code>Methodref</code> to <code>java/lang/System.exit</code> in the constant pool. If there isn't
+ * one, there is nothing for the agent to rewrite.
+ */
+final class ConstantPoolScanner {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final byte[] SYSTEM_CLASS = "java/lang/System".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EXIT_METHOD = "exit".getBytes(StandardCharsets.UTF_8);
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    // Classes load on many threads at once, so each keeps its own offsets rather than allocating them per class.
+    // Unusually large constant pools get a one-off array, so no thread holds on to a big one.
+    private static final int MAX_REUSED_OFFSETS = 8192;
+    private static final ThreadLocal<int[]> reusedOffsets = new ThreadLocal<>();
+
+    private ConstantPoolScanner() {
+
+    }
+
+    /**
+     * Determine whether the given class file references <code>java/lang/System.exit</code>.
+     *
+     * @param classFile the bytes of a class file
+     * @return false if the class definitely does not call <code>System.exit()</code>, true if it might. Class
+     * files that cannot be read are reported as true, so they are handled exactly as they were before scanning.
+     */
+    static boolean referencesSystemExit(final byte[] classFile) {
+        try {
+            return scan(classFile);
+        } catch (final ArrayIndexOutOfBoundsException e) {
+            return true;
+        }
+    }
+
+    private static boolean scan(final byte[] classFile) {
+        if (readInt(classFile, 0) != MAGIC) {
+            return true;
+        }
+        final int constantPoolCount = readUnsignedShort(classFile, 8);
+        final int[] offsets = offsets(constantPoolCount);
+        boolean hasMethodref = false;
+
+        // First pass: record where each entry starts, so entries can refer to each other by index.
+        int offset = 10;
+        for (int index = 1; index < constantPoolCount; index++) {
+            offsets[index] = offset;
+            final int tag = classFile[offset];
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    offset += 3 + readUnsignedShort(classFile, offset + 1);
+                    break;
+                case CONSTANT_METHODREF:
+                    hasMethodref = true;
+                    offset += 5;
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    offset += 5;
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    offset += 9;
+                    if (++index < constantPoolCount) {
+                        // Offsets are reused, so clear the unusable entry that follows a long or double.
+                        offsets[index] = 0;
+                    }
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    offset += 3;
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    offset += 4;
+                    break;
+                default:
+                    // Unknown constant pool tag, let ASM decide what to do with this class.
+                    return true;
+            }
+        }
+        if (!hasMethodref) {
+            return false;
+        }
+
+        // Second pass: look for a Methodref to System.exit
+        for (int index = 1; index < constantPoolCount; index++) {
+            final int entry = offsets[index];
+            if (entry != 0 && classFile[entry] == CONSTANT_METHODREF) {
+                final int classEntry = entry(offsets, constantPoolCount, readUnsignedShort(classFile, entry + 1));
+                final int nameAndTypeEntry = entry(offsets, constantPoolCount, readUnsignedShort(classFile, entry + 3));
+                if (utf8Equals(classFile, entry(offsets, constantPoolCount, readUnsignedShort(classFile, nameAndTypeEntry + 1)), EXIT_METHOD) &&
+                        utf8Equals(classFile, entry(offsets, constantPoolCount, readUnsignedShort(classFile, classEntry + 1)), SYSTEM_CLASS)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int[] offsets(final int constantPoolCount) {
+        if (constantPoolCount > MAX_REUSED_OFFSETS) {
+            return new int[constantPoolCount];
+        }
+        int[] offsets = reusedOffsets.get();
+        if (offsets == null || offsets.length < constantPoolCount) {
+            offsets = new int[Math.max(constantPoolCount, 256)];
+            reusedOffsets.set(offsets);
+        }
+        return offsets;
+    }
+
+    // A reused array may be longer than this constant pool, so check the bounds the array used to check for us.
+    private static int entry(final int[] offsets, final int constantPoolCount, final int index) {
+        if (index >= constantPoolCount) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return offsets[index];
+    }
+
+    private static boolean utf8Equals(final byte[] classFile, final int entry, final byte[] expected) {
+        if (classFile[entry] != CONSTANT_UTF8 || readUnsignedShort(classFile, entry + 1) != expected.length) {
+            return false;
+        }
+        final int start = entry + 3;
+        for (int i = 0; i < expected.length; i++) {
+            if (classFile[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readUnsignedShort(final byte[] classFile, final int offset) {
+        return ((classFile[offset] & 0xFF) << 8) | (classFile[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(final byte[] classFile, final int offset) {
+        return ((classFile[offset] & 0xFF) << 24) |
+                ((classFile[offset + 1] & 0xFF) << 16) |
+                ((classFile[offset + 2] & 0xFF) << 8) |
+                (classFile[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+
+/**
+ * Links calls to <code>System.exit()</code> rewritten as <code>invokedynamic</code> instructions.
+ * <p>
+ * Every rewritten call shares one {@link MutableCallSite}. While no tests are running, it targets
+ * <code>System.exit()</code> directly, so JIT-compiled code pays nothing for having been rewritten. When a test
+ * starts, it is relinked to {@link AgentSystemExitHandlerStrategy#handleExit(int)}, and back again when the last
+ * running test finishes.
+ */
+public final class ExitCallSite {
+
+    private static final MethodType EXIT_TYPE = MethodType.methodType(void.class, int.class);
+
+    private static MutableCallSite callSite;
+    private static MethodHandle systemExit;
+    private static MethodHandle handleExit;
+
+    private ExitCallSite() {
+
+    }
+
+    /**
+     * Bootstrap method for rewritten <code>invokedynamic</code> instructions.
+     */
+    public static synchronized CallSite bootstrap(final MethodHandles.Lookup caller,
+                                                  final String name,
+                                                  final MethodType type) throws ReflectiveOperationException {
+        if (callSite == null) {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            systemExit = lookup.findStatic(System.class, "exit", EXIT_TYPE);
+            handleExit = lookup.findStatic(AgentSystemExitHandlerStrategy.class, "handleExit", EXIT_TYPE);
+            callSite = new MutableCallSite(EXIT_TYPE);
+            relink();
+        }
+        return callSite;
+    }
+
+    /**
+     * Called whenever a test starts or finishes. Nothing happens until the first call site has been linked.
+     */
+    static synchronized void runningTestsChanged() {
+        if (callSite != null) {
+            relink();
+        }
+    }
+
+    private static void relink() {
+        final MethodHandle target = AgentSystemExitHandlerStrategy.hasRunningTests() ? handleExit : systemExit;
+        if (callSite.getTarget() != target) {
+            callSite.setTarget(target);
+            MutableCallSite.syncAll(new MutableCallSite[]{callSite});
+        }
+    }
+}
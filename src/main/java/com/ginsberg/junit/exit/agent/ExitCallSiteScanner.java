@@ -0,0 +1,288 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import org.objectweb.asm.ClassReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Lists every call to <code>System.exit()</code> in directories of classes and jars, without changing them.
+ * Calls in classes or methods annotated with <code>@DoNotRewriteExitCalls</code> are left out, so the report
+ * shows exactly what the agent would rewrite.
+ * <p>
+ * Usage: <code>java -cp junit5-system-exit.jar:asm.jar com.ginsberg.junit.exit.agent.ExitCallSiteScanner
+ * [--output report.json] &lt;directory or jar&gt;...</code>
+ * <p>
+ * The report is JSON, written to standard output unless <code>--output</code> is given.
+ */
+public class ExitCallSiteScanner {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final AtomicInteger classesSeen = new AtomicInteger();
+    private final AtomicInteger classesScanned = new AtomicInteger();
+
+    public static void main(final String[] args) throws IOException {
+        Path output = null;
+        final List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--output") && i + 1 < args.length) {
+                output = Paths.get(args[++i]);
+            } else {
+                inputs.add(Paths.get(args[i]));
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Usage: ExitCallSiteScanner [--output report.json] <directory or jar>..."
+            );
+        }
+        final ExitCallSiteScanner scanner = new ExitCallSiteScanner();
+        final String report = scanner.toJson(scanner.scan(inputs));
+        if (output == null) {
+            System.out.println(report);
+        } else {
+            if (output.getParent() != null) {
+                Files.createDirectories(output.getParent());
+            }
+            Files.write(output, report.getBytes(StandardCharsets.UTF_8));
+            System.out.println("Wrote report for " + scanner.classesSeen.get() + " classes to " + output);
+        }
+    }
+
+    List<CallSite> scan(final List<Path> inputs) throws IOException {
+        final List<CallSite> callSites = new ArrayList<>();
+        for (final Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                callSites.addAll(scanDirectory(input));
+            } else if (Files.isRegularFile(input)) {
+                callSites.addAll(scanJar(input));
+            } else {
+                throw new IllegalArgumentException("Input does not exist: " + input);
+            }
+        }
+        callSites.sort(Comparator.comparing(CallSite::getSource)
+                .thenComparing(CallSite::getClassName)
+                .thenComparingInt(CallSite::getLine));
+        return callSites;
+    }
+
+    int getClassesSeen() {
+        return classesSeen.get();
+    }
+
+    int getClassesScanned() {
+        return classesScanned.get();
+    }
+
+    private List<CallSite> scanDirectory(final Path input) throws IOException {
+        final List<Path> files;
+        try (final Stream<Path> walk = Files.walk(input)) {
+            files = walk.filter(file -> file.toString().endsWith(CLASS_SUFFIX) && Files.isRegularFile(file))
+                    .collect(Collectors.toList());
+        }
+        final String source = input.toString();
+        try {
+            return files.parallelStream()
+                    .flatMap(file -> {
+                        try {
+                            final String name = input.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                            return scanEntry(source, name, Files.readAllBytes(file)).stream();
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private List<CallSite> scanJar(final Path input) throws IOException {
+        final String source = input.toString();
+        try (final ZipFile zip = new ZipFile(input.toFile())) {
+            final List<ZipEntry> entries = Collections.list(zip.entries()).stream()
+                    .filter(entry -> !entry.isDirectory() && entry.getName().endsWith(CLASS_SUFFIX))
+                    .collect(Collectors.toList());
+            try {
+                return entries.parallelStream()
+                        .flatMap(entry -> {
+                            try (final InputStream in = zip.getInputStream(entry)) {
+                                return scanEntry(source, entry.getName(), in.readAllBytes()).stream();
+                            } catch (final IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        })
+                        .collect(Collectors.toList());
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private List<CallSite> scanEntry(final String source, final String name, final byte[] classFile) {
+        if (name.endsWith("module-info" + CLASS_SUFFIX)) {
+            return Collections.emptyList();
+        }
+        classesSeen.incrementAndGet();
+        // Most classes never mention System.exit(), so don't pay for a full parse of them.
+        if (!ConstantPoolScanner.referencesSystemExit(classFile)) {
+            return Collections.emptyList();
+        }
+        classesScanned.incrementAndGet();
+        final CallSiteClassVisitor visitor = new CallSiteClassVisitor(source);
+        new ClassReader(classFile).accept(visitor, ClassReader.SKIP_FRAMES);
+        return visitor.callSites;
+    }
+
+    String toJson(final List<CallSite> callSites) {
+        final StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"classesSeen\": ").append(classesSeen.get()).append(",\n");
+        json.append("  \"classesScanned\": ").append(classesScanned.get()).append(",\n");
+        json.append("  \"callSites\": [");
+        for (int i = 0; i < callSites.size(); i++) {
+            final CallSite callSite = callSites.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"source\": ").append(quote(callSite.getSource()))
+                    .append(", \"class\": ").append(quote(callSite.getClassName()))
+                    .append(", \"method\": ").append(quote(callSite.getMethodName()))
+                    .append(", \"descriptor\": ").append(quote(callSite.getMethodDescriptor()))
+                    .append(", \"line\": ").append(callSite.getLine() < 0 ? "null" : String.valueOf(callSite.getLine()))
+                    .append("}");
+        }
+        json.append(callSites.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}");
+        return json.toString();
+    }
+
+    private static String quote(final String value) {
+        final StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * One call to <code>System.exit()</code>. The line is -1 when the class was compiled without line numbers.
+     */
+    static class CallSite {
+        private final String source;
+        private final String className;
+        private final String methodName;
+        private final String methodDescriptor;
+        private final int line;
+
+        CallSite(final String source,
+                 final String className,
+                 final String methodName,
+                 final String methodDescriptor,
+                 final int line) {
+            this.source = source;
+            this.className = className;
+            this.methodName = methodName;
+            this.methodDescriptor = methodDescriptor;
+            this.line = line;
+        }
+
+        String getSource() {
+            return source;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        String getMethodName() {
+            return methodName;
+        }
+
+        String getMethodDescriptor() {
+            return methodDescriptor;
+        }
+
+        int getLine() {
+            return line;
+        }
+
+        @Override
+        public String toString() {
+            return className + "." + methodName + methodDescriptor + ":" + line;
+        }
+    }
+
+    // Reuses the agent's own visitors, so the report and the rewrite agree on what counts as a call site.
+    private static class CallSiteClassVisitor extends Junit5SystemExitAgent.SystemExitClassVisitor {
+        private final String source;
+        private final List<CallSite> callSites = new ArrayList<>();
+        private String className;
+
+        CallSiteClassVisitor(final String source) {
+            super(null, CallSiteMode.INVOKE_STATIC, null);
+            this.source = source;
+        }
+
+        @Override
+        public void visit(final int version,
+                          final int access,
+                          final String name,
+                          final String signature,
+                          final String superName,
+                          final String[] interfaces) {
+            // Named by the class file itself, not by where it sits under the scanned directory
+            className = name.replace('/', '.');
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        void visitExitCall(final String methodName, final String methodDescriptor, final int line) {
+            callSites.add(new CallSite(source, className, methodName, methodDescriptor, line));
+        }
+    }
+}
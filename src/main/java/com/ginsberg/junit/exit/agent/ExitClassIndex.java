@@ -0,0 +1,156 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The classes in one jar or directory that call <code>System.exit()</code>, as written by
+ * {@link ExitClassIndexer}. When a class is loaded from a jar or directory that has an index, the agent looks
+ * the class up here instead of scanning its bytes, so classes that don't call <code>System.exit()</code> cost
+ * one binary search.
+ * <p>
+ * The index is the resource {@link #RESOURCE}: a header line, followed by the sorted internal names of the
+ * classes that call <code>System.exit()</code>, one per line.
+ */
+final class ExitClassIndex {
+
+    private final static Logger log = Logger.getLogger(ExitClassIndex.class.getName());
+
+    static final String RESOURCE = "META-INF/junit5-system-exit.idx";
+    private static final String HEADER = "# junit5-system-exit index 1";
+
+    /**
+     * Stands in for jars and directories without an index, whose classes are scanned as usual.
+     */
+    static final ExitClassIndex NONE = new ExitClassIndex(null);
+
+    private final String[] classNames;
+
+    private ExitClassIndex(final String[] classNames) {
+        this.classNames = classNames;
+    }
+
+    /**
+     * @param classNames the internal names of classes that call <code>System.exit()</code>
+     */
+    static ExitClassIndex of(final Collection<String> classNames) {
+        return new ExitClassIndex(classNames.stream().distinct().sorted().toArray(String[]::new));
+    }
+
+    boolean isPresent() {
+        return classNames != null;
+    }
+
+    /**
+     * @return true if the index lists this class as calling <code>System.exit()</code>
+     */
+    boolean contains(final String className) {
+        return Arrays.binarySearch(classNames, className) >= 0;
+    }
+
+    int size() {
+        return classNames.length;
+    }
+
+    byte[] toBytes() {
+        final StringBuilder content = new StringBuilder(HEADER).append('\n');
+        for (final String className : classNames) {
+            content.append(className).append('\n');
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the index, or null if the content is not an index this version understands
+     */
+    static ExitClassIndex parse(final byte[] content) {
+        final String[] lines = new String(content, StandardCharsets.UTF_8).split("\r?\n");
+        if (!lines[0].equals(HEADER)) {
+            return null;
+        }
+        final String[] classNames = Arrays.copyOfRange(lines, 1, lines.length);
+        // Sorted by the indexer, but don't trust a file we didn't write to be.
+        Arrays.sort(classNames);
+        return new ExitClassIndex(classNames);
+    }
+
+    /**
+     * Read the index from a jar or directory, as given by the location of a class's <code>CodeSource</code>.
+     *
+     * @return the index, or {@link #NONE} if there isn't one
+     */
+    static ExitClassIndex read(final URL location) {
+        if (location == null || !"file".equals(location.getProtocol())) {
+            return NONE;
+        }
+        try {
+            final byte[] content = readResource(Paths.get(location.toURI()));
+            if (content == null) {
+                return NONE;
+            }
+            final ExitClassIndex index = parse(content);
+            if (index == null) {
+                log.warning("Ignoring unrecognized index in " + location);
+                return NONE;
+            }
+            return index;
+        } catch (final IOException | URISyntaxException | RuntimeException e) {
+            log.log(Level.FINE, "Unable to read index from " + location, e);
+            return NONE;
+        }
+    }
+
+    private static byte[] readResource(final Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            final Path resource = path.resolve(RESOURCE);
+            return Files.isRegularFile(resource) ? Files.readAllBytes(resource) : null;
+        }
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (final ZipFile zip = new ZipFile(path.toFile())) {
+            final ZipEntry entry = zip.getEntry(RESOURCE);
+            if (entry == null) {
+                return null;
+            }
+            try (final InputStream in = zip.getInputStream(entry)) {
+                return in.readAllBytes();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes an {@link ExitClassIndex} into a directory of classes or a jar, listing the classes in it that call
+ * <code>System.exit()</code>. With the index in place, the agent doesn't need to look at the bytes of any other
+ * class from that directory or jar. Run this on the final classes: an index that is out of date will cause
+ * the agent to miss calls.
+ * <p>
+ * Usage: <code>java -cp junit5-system-exit.jar:asm.jar com.ginsberg.junit.exit.agent.ExitClassIndexer
+ * &lt;directory or jar&gt;...</code>
+ */
+public class ExitClassIndexer {
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Usage: ExitClassIndexer <directory or jar>...");
+        }
+        for (final String arg : args) {
+            final ExitClassIndex index = index(Paths.get(arg));
+            System.out.println("Indexed " + index.size() + " classes that call System.exit() in " + arg);
+        }
+    }
+
+    static ExitClassIndex index(final Path input) throws IOException {
+        final List<String> classNames = new ExitCallSiteScanner().scan(List.of(input)).stream()
+                .map(callSite -> callSite.getClassName().replace('.', '/'))
+                .collect(Collectors.toList());
+        final ExitClassIndex index = ExitClassIndex.of(classNames);
+        if (Files.isDirectory(input)) {
+            write(input.resolve(ExitClassIndex.RESOURCE), index);
+        } else {
+            try (final FileSystem jar = FileSystems.newFileSystem(input)) {
+                write(jar.getPath(ExitClassIndex.RESOURCE), index);
+            }
+        }
+        return index;
+    }
+
+    private static void write(final Path resource, final ExitClassIndex index) throws IOException {
+        Files.createDirectories(resource.getParent());
+        Files.write(resource, index.toBytes());
+    }
+}
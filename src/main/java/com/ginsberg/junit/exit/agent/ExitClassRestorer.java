@@ -0,0 +1,175 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps classes that call <code>System.exit()</code> rewritten only while tests are running, when the agent is
+ * started with <code>restore=true</code>. When the first test starts, every such class is retransformed to its
+ * rewritten form, and when the last running test finishes, they are retransformed back to their original form.
+ * Code that runs between tests, such as benchmarks or latency-sensitive tests, runs exactly as written.
+ * <p>
+ * The index holds the classes themselves, weakly, so each toggle retransforms just those classes without looking
+ * through every class the JVM has loaded, and doesn't keep them from being unloaded. The JVM already holds each
+ * class's original bytes for retransformation, so they are not copied. Restoring is delayed a little, so a run of
+ * tests that each call <code>System.exit()</code> doesn't retransform the same classes back and forth between every
+ * test.
+ */
+final class ExitClassRestorer {
+
+    private static final long RESTORE_DELAY_MILLIS = 250;
+    private static volatile ExitClassRestorer restorer;
+
+    private final Instrumentation inst;
+    private final Set<Class<?>> exitClasses = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+    // Classes seen as they were first loaded, which didn't exist yet to be put in the index.
+    private final Queue<UndefinedClass> undefinedClasses = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "junit5-system-exit-restorer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean rewriting = false;
+    private ScheduledFuture<?> pendingRestore;
+
+    private ExitClassRestorer(final Instrumentation inst) {
+        this.inst = inst;
+    }
+
+    static ExitClassRestorer install(final Instrumentation inst) {
+        restorer = new ExitClassRestorer(inst);
+        return restorer;
+    }
+
+    /**
+     * Called whenever a test starts or finishes.
+     */
+    static void runningTestsChanged() {
+        final ExitClassRestorer current = restorer;
+        if (current != null) {
+            current.update();
+        }
+    }
+
+    /**
+     * @return true if classes that call <code>System.exit()</code> should be rewritten right now
+     */
+    boolean isRewriting() {
+        return rewriting;
+    }
+
+    /**
+     * Remember a class that calls <code>System.exit()</code>, so it can be retransformed later.
+     *
+     * @param exitClass the class, or null if it is being loaded for the first time and doesn't exist yet
+     */
+    void index(final ClassLoader loader, final String className, final Class<?> exitClass) {
+        if (exitClass != null) {
+            exitClasses.add(exitClass);
+        } else {
+            undefinedClasses.add(new UndefinedClass(loader, className));
+        }
+    }
+
+    void indexAll(final Collection<Class<?>> classes) {
+        exitClasses.addAll(classes);
+    }
+
+    private synchronized void update() {
+        if (AgentSystemExitHandlerStrategy.hasRunningTests()) {
+            if (pendingRestore != null) {
+                pendingRestore.cancel(false);
+                pendingRestore = null;
+            }
+            if (!rewriting) {
+                // This has to finish before the test starts, or it might call the original System.exit().
+                rewriting = true;
+                retransformIndexedClasses();
+            }
+        } else if (rewriting && pendingRestore == null) {
+            pendingRestore = scheduler.schedule(this::restore, RESTORE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void restore() {
+        pendingRestore = null;
+        if (rewriting && !AgentSystemExitHandlerStrategy.hasRunningTests()) {
+            rewriting = false;
+            retransformIndexedClasses();
+        }
+    }
+
+    private void retransformIndexedClasses() {
+        defineIndexedClasses();
+        final List<Class<?>> indexed;
+        synchronized (exitClasses) {
+            indexed = new ArrayList<>(exitClasses);
+        }
+        indexed.removeIf(exitClass -> !inst.isModifiableClass(exitClass));
+        Junit5SystemExitAgent.retransform(inst, indexed);
+    }
+
+    // By now the classes have been defined by their loaders, so asking the loader finds them without loading anything.
+    private void defineIndexedClasses() {
+        UndefinedClass undefined;
+        while ((undefined = undefinedClasses.poll()) != null) {
+            final ClassLoader loader = undefined.loader.get();
+            if (loader == null) {
+                continue;
+            }
+            try {
+                final Class<?> exitClass = Class.forName(undefined.className.replace('/', '.'), false, loader);
+                if (exitClass.getClassLoader() == loader) {
+                    exitClasses.add(exitClass);
+                }
+            } catch (final ClassNotFoundException | LinkageError e) {
+                // The class failed to load, so there is nothing to retransform.
+            }
+        }
+    }
+
+    private static class UndefinedClass {
+        private final WeakReference<ClassLoader> loader;
+        private final String className;
+
+        UndefinedClass(final ClassLoader loader, final String className) {
+            this.loader = new WeakReference<>(loader);
+            this.className = className;
+        }
+    }
+}
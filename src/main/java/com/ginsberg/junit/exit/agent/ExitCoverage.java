@@ -0,0 +1,203 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records which rewritten <code>System.exit()</code> call sites run, when the <code>coverage</code> agent option
+ * is set. Each call site is given an id when its class is rewritten, and the rewritten call passes that id to
+ * {@link AgentSystemExitHandlerStrategy#handleExit(int, int)}, which counts a hit on a probe registered up front.
+ * <p>
+ * Only classes that were loaded are reported. A class may be rewritten before it is loaded, by the preloader, so its
+ * probes are only reported once the class has been handed to the JVM, see {@link #loaded(String)}.
+ */
+final class ExitCoverage {
+
+    private final static Logger log = Logger.getLogger(ExitCoverage.class.getName());
+
+    private static volatile boolean enabled = false;
+    // Replaced (never modified) when it fills up, so hit() can read it without locking.
+    private static volatile Probe[] probes = new Probe[256];
+    private static final Map<String, Integer> probeIds = new HashMap<>();
+    private static final Map<String, List<Probe>> probesByClass = new HashMap<>();
+    private static int probeCount = 0;
+
+    private ExitCoverage() {
+
+    }
+
+    /**
+     * Start recording, and write the report to the given file when the JVM exits.
+     */
+    static void enable(final Path report) {
+        enabled = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> writeReport(report), "junit5-system-exit-coverage"));
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Find or create the probe for a call site. The same class may be rewritten more than once (for different
+     * class loaders, or by the preloader and the transformer at the same time), so call sites are identified
+     * by their class and position within it rather than given a fresh id every time.
+     *
+     * @param className  the internal name of the class being rewritten
+     * @param index      which call site this is within the class, counting from zero
+     * @param methodName the method the call is in
+     * @param descriptor the descriptor of that method
+     * @param line       the source line of the call, or -1 if the class has no line numbers
+     * @return the id to pass to {@link #hit(int)}
+     */
+    static synchronized int register(final String className,
+                                     final int index,
+                                     final String methodName,
+                                     final String descriptor,
+                                     final int line) {
+        final String key = className + '#' + index;
+        final Integer existing = probeIds.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        final int id = probeCount++;
+        Probe[] current = probes;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        final Probe probe = new Probe(className.replace('/', '.'), methodName, descriptor, line);
+        current[id] = probe;
+        probes = current;
+        probeIds.put(key, id);
+        probesByClass.computeIfAbsent(className, it -> new ArrayList<>()).add(probe);
+        return id;
+    }
+
+    /**
+     * Report the call sites registered for a class, now that it has been loaded.
+     *
+     * @param className the internal name of the rewritten class
+     */
+    static synchronized void loaded(final String className) {
+        for (final Probe probe : probesByClass.getOrDefault(className, List.of())) {
+            probe.loaded = true;
+        }
+    }
+
+    /**
+     * Count a call through the given site. This runs for every prevented exit, so it must not allocate.
+     */
+    static void hit(final int id) {
+        final Probe[] current = probes;
+        if (id >= 0 && id < current.length && current[id] != null) {
+            current[id].hits.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the probes for call sites in classes that were loaded
+     */
+    static synchronized List<Probe> probes() {
+        final List<Probe> loaded = new ArrayList<>();
+        for (final Probe probe : Arrays.asList(probes).subList(0, probeCount)) {
+            if (probe.loaded) {
+                loaded.add(probe);
+            }
+        }
+        return loaded;
+    }
+
+    static String report() {
+        final List<Probe> all = probes();
+        final StringBuilder report = new StringBuilder();
+        final long exercised = all.stream().filter(probe -> probe.getHits() > 0).count();
+        report.append("System.exit() call sites exercised: ").append(exercised).append(" of ").append(all.size()).append('\n');
+        all.stream()
+                .filter(probe -> probe.getHits() == 0)
+                .sorted(Comparator.comparing(Probe::getClassName).thenComparingInt(Probe::getLine))
+                .forEach(probe -> report.append("Not exercised: ").append(probe).append('\n'));
+        return report.toString();
+    }
+
+    private static void writeReport(final Path report) {
+        try {
+            if (report.getParent() != null) {
+                Files.createDirectories(report.getParent());
+            }
+            Files.write(report, report().getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            log.log(Level.WARNING, "Unable to write System.exit() coverage report to " + report, e);
+        }
+    }
+
+    static final class Probe {
+        private final String className;
+        private final String methodName;
+        private final String descriptor;
+        private final int line;
+        private final AtomicLong hits = new AtomicLong();
+        private boolean loaded = false;
+
+        private Probe(final String className, final String methodName, final String descriptor, final int line) {
+            this.className = className;
+            this.methodName = methodName;
+            this.descriptor = descriptor;
+            this.line = line;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        String getMethodName() {
+            return methodName;
+        }
+
+        int getLine() {
+            return line;
+        }
+
+        long getHits() {
+            return hits.get();
+        }
+
+        @Override
+        public String toString() {
+            return className + "." + methodName + descriptor + (line < 0 ? "" : " line " + line);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+/**
+ * Emits the agent's Flight Recorder events. Only {@link AgentEvents} may refer to this class, and only once it
+ * knows the <code>jdk.jfr</code> module is present.
+ */
+final class JfrEvents {
+
+    // Used only to ask whether the event type is enabled, which doesn't depend on the instance.
+    private static final ClassTransformEvent transformProbe = new ClassTransformEvent();
+    private static final SystemExitPreventedEvent exitProbe = new SystemExitPreventedEvent();
+
+    private JfrEvents() {
+
+    }
+
+    static boolean isTransformEnabled() {
+        return transformProbe.isEnabled();
+    }
+
+    static Object beginTransform() {
+        final ClassTransformEvent event = new ClassTransformEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitTransform(final Object started, final String className, final int bytesIn, final byte[] bytesOut) {
+        final ClassTransformEvent event = (ClassTransformEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.className = className;
+            event.bytesIn = bytesIn;
+            event.rewritten = bytesOut != null;
+            event.bytesOut = bytesOut == null ? 0 : bytesOut.length;
+            event.commit();
+        }
+    }
+
+    static boolean isExitPreventedEnabled() {
+        return exitProbe.isEnabled();
+    }
+
+    static void exitPrevented(final int statusCode, final String caller, final String testId) {
+        final SystemExitPreventedEvent event = new SystemExitPreventedEvent();
+        if (event.shouldCommit()) {
+            event.statusCode = statusCode;
+            event.caller = caller;
+            event.testId = testId;
+            event.commit();
+        }
+    }
+}
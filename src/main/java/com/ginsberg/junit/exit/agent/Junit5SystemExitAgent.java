@@ -27,13 +27,27 @@ import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.security.CodeSource;
 import java.security.ProtectionDomain;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Junit5SystemExitAgent {
@@ -44,47 +58,524 @@ public class Junit5SystemExitAgent {
 
     }
 
-    private final static Set<String> disallowedClassPrefixes = Set.of(
-            "com/sun/", "java/", "jdk/", "worker/org/gradle/", "sun/"
-    );
-
     private final static String SKIP_ANNOTATION = "/DoNotRewriteExitCalls;";
+    private final static String HANDLER_CLASS = "com/ginsberg/junit/exit/agent/AgentSystemExitHandlerStrategy";
+    private final static Handle EXIT_CALL_SITE_BOOTSTRAP = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            "com/ginsberg/junit/exit/agent/ExitCallSite",
+            "bootstrap",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;",
+            false
+    );
 
     public static void premain(final String agentArgs, final Instrumentation inst) {
+        final AgentOptions options = AgentOptions.parse(agentArgs);
         AgentSystemExitHandlerStrategy.agentInit();
-        inst.addTransformer(new SystemExitClassTransformer());
+        configure(options);
+        final ExitClassRestorer restorer = createRestorer(options, inst);
+        final SystemExitClassTransformer transformer = createTransformer(options, restorer);
+        final boolean preload = options.getBoolean(AgentOptions.PRELOAD, false);
+        if (preload) {
+            // The preloader uses the transformer outside of class loading, so it must already be warm.
+            transformer.warmUp();
+        }
+        inst.addTransformer(transformer, restorer != null);
+        if (preload) {
+            ClassPathPreloader.start(transformer, System.getProperty("java.class.path"));
+        }
+    }
+
+    /**
+     * Called by {@link AgentBootstrap} when the first class that may need rewriting is loaded.
+     */
+    static SystemExitClassTransformer start(final AgentOptions options) {
+        configure(options);
+        return createTransformer(options);
+    }
+
+    /**
+     * Called when the agent is attached to a running JVM, usually by {@link AgentAttacher}. Classes that are already
+     * loaded and call <code>System.exit()</code> are retransformed; everything else is handled as it is loaded.
+     */
+    public static void agentmain(final String agentArgs, final Instrumentation inst) {
+        if (AgentSystemExitHandlerStrategy.isLoadedFromAgent()) {
+            return;
+        }
+        final AgentOptions options = AgentOptions.parse(agentArgs);
+        configure(options);
+        final ExitClassRestorer restorer = createRestorer(options, inst);
+        final SystemExitClassTransformer transformer = createTransformer(options, restorer);
+        transformer.warmUp();
+        inst.addTransformer(transformer, true);
+        final List<Class<?>> exitClasses = findLoadedExitClasses(inst, transformer);
+        if (restorer == null) {
+            retransform(inst, exitClasses);
+        } else {
+            // No test is running yet, so leave them alone until one starts.
+            restorer.indexAll(exitClasses);
+        }
+        AgentSystemExitHandlerStrategy.agentInit();
+    }
+
+    private static void configure(final AgentOptions options) {
+        AgentSystemExitHandlerStrategy.captureStackTraces(options.getBoolean(AgentOptions.STACK_TRACES, true));
+        if (options.getBoolean(AgentOptions.JMX, false)) {
+            AgentMetrics.metrics().registerMBean();
+        }
+        if (options.getBoolean(AgentOptions.SUMMARY, false)) {
+            AgentMetrics.metrics().printSummaryAtShutdown();
+        }
+        final Path coverageReport = options.getPath(AgentOptions.COVERAGE);
+        if (coverageReport != null) {
+            ExitCoverage.enable(coverageReport);
+        }
+    }
+
+    /**
+     * Find classes that were loaded before the transformer was added, but only those that call
+     * <code>System.exit()</code>. Each candidate's original class file is read back from its class loader and
+     * scanned, so the JVM is only asked to retransform the few classes that need it.
+     */
+    static List<Class<?>> findLoadedExitClasses(final Instrumentation inst, final SystemExitClassTransformer transformer) {
+        final List<Class<?>> candidates = new ArrayList<>();
+        for (final Class<?> loaded : inst.getAllLoadedClasses()) {
+            final ClassLoader loader = loaded.getClassLoader();
+            if (!ClassFilter.isApplicationLoader(loader) || loaded.isArray() || loaded.isHidden() || !inst.isModifiableClass(loaded)) {
+                continue;
+            }
+            final String className = loaded.getName().replace('.', '/');
+            if (!transformer.isCandidate(className) || !transformer.isIncluded(loaded.getProtectionDomain())) {
+                continue;
+            }
+            try (InputStream in = loader.getResourceAsStream(className + ".class")) {
+                if (in != null && ConstantPoolScanner.referencesSystemExit(in.readAllBytes())) {
+                    candidates.add(loaded);
+                }
+            } catch (final IOException e) {
+                log.log(Level.FINE, "Unable to read " + className, e);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Retransform the given classes, all at once if possible.
+     */
+    static void retransform(final Instrumentation inst, final List<Class<?>> candidates) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        try {
+            inst.retransformClasses(candidates.toArray(new Class<?>[0]));
+        } catch (final UnmodifiableClassException | RuntimeException | LinkageError e) {
+            // One bad class fails the whole batch, so fall back to one at a time.
+            log.log(Level.FINE, "Unable to retransform loaded classes together, trying one at a time", e);
+            for (final Class<?> candidate : candidates) {
+                try {
+                    inst.retransformClasses(candidate);
+                } catch (final UnmodifiableClassException | RuntimeException | LinkageError ex) {
+                    log.log(Level.WARNING, "Unable to retransform " + candidate.getName(), ex);
+                }
+            }
+        }
+    }
+
+    static SystemExitClassTransformer createTransformer(final AgentOptions options) {
+        return createTransformer(options, null);
+    }
+
+    static SystemExitClassTransformer createTransformer(final AgentOptions options, final ExitClassRestorer restorer) {
+        return new SystemExitClassTransformer(
+                ClassFilter.of(options),
+                // Coverage probes are passed to the handler directly, so they need invokestatic call sites.
+                ExitCoverage.isEnabled() ? CallSiteMode.INVOKE_STATIC : options.getCallSiteMode(),
+                createCache(options),
+                restorer
+        );
+    }
+
+    private static ExitClassRestorer createRestorer(final AgentOptions options, final Instrumentation inst) {
+        if (!options.getBoolean(AgentOptions.RESTORE, false)) {
+            return null;
+        }
+        if (!inst.isRetransformClassesSupported()) {
+            log.warning("Restoring classes after tests needs Can-Retransform-Classes in the agent's manifest");
+            return null;
+        }
+        return ExitClassRestorer.install(inst);
+    }
+
+    /**
+     * Rewrite any calls to <code>System.exit()</code> in the given class.
+     *
+     * @return the rewritten class, or null if the class did not need to be changed
+     */
+    static byte[] rewrite(final String className, final byte[] classFileBuffer) {
+        return rewrite(className, classFileBuffer, CallSiteMode.INVOKE_STATIC);
+    }
+
+    static byte[] rewrite(final String className, final byte[] classFileBuffer, final CallSiteMode callSiteMode) {
+        final RewrittenClass rewritten = rewriteClass(className, classFileBuffer, callSiteMode, false);
+        if (rewritten.rewritten != null) {
+            AgentMetrics.metrics().classRewritten(rewritten.callSites);
+        }
+        return rewritten.rewritten;
+    }
+
+    private static RewrittenClass rewriteClass(final String className,
+                                               final byte[] classFileBuffer,
+                                               final CallSiteMode callSiteMode,
+                                               final boolean preloaded) {
+        final ClassReader classReader = new ClassReader(classFileBuffer);
+        final ClassWriter classWriter = new ClassWriter(classReader, 0);
+        final SystemExitClassVisitor classVisitor = new SystemExitClassVisitor(className, callSiteMode, classWriter);
+        classReader.accept(classVisitor, 0);
+        return new RewrittenClass(
+                classFileBuffer,
+                classVisitor.rewrittenCallSites == 0 ? null : classWriter.toByteArray(),
+                classVisitor.rewrittenCallSites,
+                preloaded
+        );
+    }
+
+    private static boolean isSystemExit(final String owner, final String name) {
+        return owner.equals("java/lang/System") && name.equals("exit");
+    }
+
+    private static boolean isSkipAnnotation(final String descriptor) {
+        return descriptor.endsWith(SKIP_ANNOTATION);
+    }
+
+    private static TransformCache createCache(final AgentOptions options) {
+        final Path directory = options.getPath(AgentOptions.CACHE_DIRECTORY);
+        if (directory == null) {
+            return null;
+        }
+        if (ExitCoverage.isEnabled()) {
+            // Rewritten classes carry probe ids that only mean something to this JVM.
+            log.warning("Not caching rewritten classes while recording coverage");
+            return null;
+        }
+        final String rewriter = rewriterHash();
+        if (rewriter == null) {
+            log.warning("Not caching rewritten classes, unable to read the agent's own classes");
+            return null;
+        }
+        final String version = Junit5SystemExitAgent.class.getPackage().getImplementationVersion();
+        return new TransformCache(
+                directory,
+                "junit5-system-exit:" + (version == null ? "development" : version) + ":" + rewriter + ":" + options.getCallSiteMode()
+        );
+    }
+
+    /**
+     * Snapshot and development builds keep the same version while the rewriter changes, so the version alone can't
+     * keep their cache entries apart.
+     *
+     * @return a hash of the class files that decide how classes are rewritten, or null if one can't be read
+     */
+    static String rewriterHash() {
+        final List<Class<?>> rewriters = new ArrayList<>();
+        for (final Class<?> rewriter : List.of(Junit5SystemExitAgent.class, ConstantPoolScanner.class)) {
+            rewriters.add(rewriter);
+            rewriters.addAll(Arrays.asList(rewriter.getDeclaredClasses()));
+        }
+        rewriters.sort(Comparator.comparing(Class::getName));
+        final byte[][] classFiles = new byte[rewriters.size()][];
+        for (int i = 0; i < classFiles.length; i++) {
+            final String resource = "/" + rewriters.get(i).getName().replace('.', '/') + ".class";
+            try (InputStream in = Junit5SystemExitAgent.class.getResourceAsStream(resource)) {
+                if (in == null) {
+                    return null;
+                }
+                classFiles[i] = in.readAllBytes();
+            } catch (final IOException e) {
+                log.log(Level.FINE, "Unable to read " + resource, e);
+                return null;
+            }
+        }
+        return TransformCache.sha256(classFiles);
     }
 
     static class SystemExitClassTransformer implements ClassFileTransformer {
+        private final ClassFilter filter;
+        private final CallSiteMode callSiteMode;
+        private final TransformCache cache;
+        private final ExitClassRestorer restorer;
+        private final AgentMetrics metrics = AgentMetrics.metrics();
+        // Only classes that call System.exit() get this far, so this stays small. It saves rewriting the same class
+        // again when it is loaded by more than one class loader, such as the isolated loaders used by MainRunner.
+        private final Map<String, RewrittenClass> rewrittenClasses = new ConcurrentHashMap<>();
+        // Keyed by code source location, so whether a jar or directory is included, and its index, are only worked
+        // out once. Holds ExitClassIndex.NONE for locations without an index.
+        private final Map<String, CodeSourceScope> codeSourceScopes = new ConcurrentHashMap<>();
+        // Classes from one jar or directory tend to load together, and share the same location URL. Remembering the
+        // last one on each thread saves building its key, so classes that aren't rewritten don't allocate anything.
+        private final ThreadLocal<CodeSourceScope> lastCodeSourceScope = new ThreadLocal<>();
+        private final CodeSourceScope unknownCodeSourceScope;
+
+        /**
+         * @param filter       decides which classes may be rewritten
+         * @param callSiteMode how rewritten calls reach the handler
+         * @param cache        where to store rewritten classes, or null to disable caching
+         * @param restorer     decides when classes are rewritten, or null to always rewrite them
+         */
+        SystemExitClassTransformer(final ClassFilter filter,
+                                   final CallSiteMode callSiteMode,
+                                   final TransformCache cache,
+                                   final ExitClassRestorer restorer) {
+            this.filter = filter;
+            this.unknownCodeSourceScope = new CodeSourceScope(null, filter.isIncluded((URL) null), ExitClassIndex.NONE);
+            this.callSiteMode = callSiteMode;
+            this.cache = cache;
+            this.restorer = restorer;
+        }
+
         @Override
         public byte[] transform(final ClassLoader loader,
                                 final String className,
                                 final Class<?> classBeingRedefined,
                                 final ProtectionDomain protectionDomain,
                                 final byte[] classFileBuffer) {
-            if (disallowedClassPrefixes.stream().anyMatch(className::startsWith)) {
+            final long start = System.nanoTime();
+            final Object event = AgentEvents.isTransformEnabled() ? AgentEvents.beginTransform() : null;
+            final byte[] transformed = rewriteIfNeeded(loader, className, classBeingRedefined, protectionDomain, classFileBuffer);
+            metrics.transformed(System.nanoTime() - start);
+            if (event != null) {
+                AgentEvents.commitTransform(event, className, classFileBuffer.length, transformed);
+            }
+            return transformed;
+        }
+
+        /**
+         * Load every class the transformer needs by running it once. When the transformer will be used outside of
+         * class loading (when attaching to a running JVM, or preloading) this must be done before it is added, or it
+         * would be asked to transform its own classes as they load, which the JVM doesn't allow.
+         */
+        void warmUp() {
+            final String handlerClass = AgentSystemExitHandlerStrategy.class.getName().replace('.', '/');
+            try (InputStream in = AgentSystemExitHandlerStrategy.class.getResourceAsStream("/" + handlerClass + ".class")) {
+                if (in != null) {
+                    // This calls System.exit(), so it goes all the way through the rewriter, but is marked to be skipped.
+                    final byte[] handlerBytes = in.readAllBytes();
+                    rewriteIfNeeded(
+                            AgentSystemExitHandlerStrategy.class.getClassLoader(),
+                            handlerClass,
+                            null,
+                            AgentSystemExitHandlerStrategy.class.getProtectionDomain(),
+                            handlerBytes
+                    );
+                    rewrite(handlerClass, handlerBytes, callSiteMode);
+                }
+            } catch (final IOException e) {
+                log.log(Level.FINE, "Unable to warm up transformer", e);
+            }
+        }
+
+        /**
+         * @return true if the include and exclude options allow this class to be rewritten
+         */
+        boolean isCandidate(final String className) {
+            return filter.isCandidate(className);
+        }
+
+        /**
+         * @return true if the code source options allow classes from this protection domain's code source to be
+         * rewritten
+         */
+        boolean isIncluded(final ProtectionDomain protectionDomain) {
+            return scopeFor(protectionDomain).included;
+        }
+
+        /**
+         * @param entry a class path entry, either a directory or a jar
+         * @return true if the code source options allow classes from this entry to be rewritten
+         */
+        boolean isIncluded(final Path entry) {
+            return filter.isIncluded(entry);
+        }
+
+        private byte[] rewriteIfNeeded(final ClassLoader loader,
+                                       final String className,
+                                       final Class<?> classBeingRedefined,
+                                       final ProtectionDomain protectionDomain,
+                                       final byte[] classFileBuffer) {
+            metrics.classSeen();
+            if (!filter.isCandidate(loader, className)) {
+                metrics.classFiltered();
+                return null;
+            }
+            final CodeSourceScope scope = scopeFor(protectionDomain);
+            if (!scope.included) {
+                metrics.classFiltered();
                 return null;
             }
-            final ClassReader classReader = new ClassReader(classFileBuffer);
-            final ClassWriter classWriter = new ClassWriter(classReader, 0);
-            classReader.accept(new SystemExitClassVisitor(className, classWriter), 0);
-            return classWriter.toByteArray();
+            metrics.classScanned();
+            final ExitClassIndex index = scope.index;
+            if (index.isPresent() ? !index.contains(className) : !ConstantPoolScanner.referencesSystemExit(classFileBuffer)) {
+                // Nothing to rewrite, so don't make the JVM parse a copy of this class.
+                return null;
+            }
+            if (restorer != null) {
+                restorer.index(loader, className, classBeingRedefined);
+                if (!restorer.isRewriting()) {
+                    return null;
+                }
+            }
+            final RewrittenClass previous = rewrittenClasses.get(className);
+            if (previous != null && Arrays.equals(previous.original, classFileBuffer)) {
+                // The preloader's work only counts once the class it prepared is loaded, which may never happen.
+                if (previous.preloaded && rewrittenClasses.replace(className, previous, previous.loaded())) {
+                    loaded(className, previous);
+                } else {
+                    metrics.cacheHit();
+                }
+                return previous.rewritten;
+            }
+            final RewrittenClass rewritten = rewriteOrLoadFromCache(className, classFileBuffer, false);
+            loaded(className, rewritten);
+            rewrittenClasses.put(className, rewritten);
+            return rewritten.rewritten;
+        }
+
+        private void loaded(final String className, final RewrittenClass loaded) {
+            if (loaded.callSites == RewrittenClass.FROM_CACHE) {
+                metrics.cacheHit();
+            } else if (loaded.rewritten != null) {
+                metrics.classRewritten(loaded.callSites);
+            }
+            if (loaded.rewritten != null && ExitCoverage.isEnabled()) {
+                ExitCoverage.loaded(className);
+            }
+        }
+
+        private CodeSourceScope scopeFor(final ProtectionDomain protectionDomain) {
+            final CodeSource codeSource = protectionDomain == null ? null : protectionDomain.getCodeSource();
+            if (codeSource == null || codeSource.getLocation() == null) {
+                return unknownCodeSourceScope;
+            }
+            final URL location = codeSource.getLocation();
+            final CodeSourceScope last = lastCodeSourceScope.get();
+            if (last != null && last.location == location) {
+                return last;
+            }
+            CodeSourceScope scope = codeSourceScopes.computeIfAbsent(location.toString(), key -> {
+                final boolean included = filter.isIncluded(location);
+                // Don't bother reading an index for a location that is never rewritten.
+                return new CodeSourceScope(location, included, included ? ExitClassIndex.read(location) : ExitClassIndex.NONE);
+            });
+            if (scope.location != location) {
+                // Another class loader has the same location, as its own URL.
+                scope = new CodeSourceScope(location, scope.included, scope.index);
+            }
+            lastCodeSourceScope.set(scope);
+            return scope;
+        }
+
+        /**
+         * Rewrite a class before it is loaded, so that {@link #transform} only has to hand back the result.
+         */
+        void preload(final String className, final byte[] classFileBuffer) {
+            if (isCandidate(className) &&
+                    !rewrittenClasses.containsKey(className) &&
+                    ConstantPoolScanner.referencesSystemExit(classFileBuffer)) {
+                rewrittenClasses.putIfAbsent(className, rewriteOrLoadFromCache(className, classFileBuffer, true));
+            }
+        }
+
+        /**
+         * @return true if this class has been rewritten, either as it was loaded or ahead of time
+         */
+        boolean hasRewritten(final String className) {
+            return rewrittenClasses.containsKey(className);
+        }
+
+        private RewrittenClass rewriteOrLoadFromCache(final String className,
+                                                      final byte[] classFileBuffer,
+                                                      final boolean preloaded) {
+            if (cache != null) {
+                final byte[] cached = cache.get(classFileBuffer);
+                if (cached != null) {
+                    return new RewrittenClass(
+                            classFileBuffer,
+                            cached == TransformCache.UNCHANGED ? null : cached,
+                            RewrittenClass.FROM_CACHE,
+                            preloaded
+                    );
+                }
+            }
+            final RewrittenClass rewritten = rewriteClass(className, classFileBuffer, callSiteMode, preloaded);
+            if (cache != null) {
+                cache.put(classFileBuffer, rewritten.rewritten);
+            }
+            return rewritten;
+        }
+    }
+
+    private static class RewrittenClass {
+        private static final int FROM_CACHE = -1;
+
+        private final byte[] original;
+        private final byte[] rewritten;
+        // How many calls were rewritten, or FROM_CACHE if the result was read from the disk cache.
+        private final int callSites;
+        // Prepared by the preloader, and not loaded yet.
+        private final boolean preloaded;
+
+        RewrittenClass(final byte[] original, final byte[] rewritten, final int callSites, final boolean preloaded) {
+            this.original = original;
+            this.rewritten = rewritten;
+            this.callSites = callSites;
+            this.preloaded = preloaded;
+        }
+
+        RewrittenClass loaded() {
+            return new RewrittenClass(original, rewritten, callSites, false);
+        }
+    }
+
+    private static class CodeSourceScope {
+        private final URL location;
+        private final boolean included;
+        private final ExitClassIndex index;
+
+        CodeSourceScope(final URL location, final boolean included, final ExitClassIndex index) {
+            this.location = location;
+            this.included = included;
+            this.index = index;
         }
     }
 
     static class SystemExitClassVisitor extends ClassVisitor {
         private final String className;
+        private CallSiteMode callSiteMode;
 
-        public SystemExitClassVisitor(final String className, final ClassVisitor cv) {
+        public SystemExitClassVisitor(final String className, final CallSiteMode callSiteMode, final ClassVisitor cv) {
             super(Opcodes.ASM9, cv);
             this.className = className;
+            this.callSiteMode = callSiteMode;
         }
 
         private boolean hasSkipAnnotation = false;
+        private int rewrittenCallSites = 0;
+
+        @Override
+        public void visit(final int version,
+                          final int access,
+                          final String name,
+                          final String signature,
+                          final String superName,
+                          final String[] interfaces) {
+            // invokedynamic is only allowed in Java 7 (major version 51) and newer class files
+            if ((version & 0xFFFF) < Opcodes.V1_7) {
+                callSiteMode = CallSiteMode.INVOKE_STATIC;
+            }
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
 
         @Override
         public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
-            if(descriptor.endsWith(SKIP_ANNOTATION)) {
+            if(isSkipAnnotation(descriptor)) {
                 hasSkipAnnotation = true;
             }
             return super.visitAnnotation(descriptor, visible);
@@ -100,27 +591,56 @@ public class Junit5SystemExitAgent {
                 return super.visitMethod(access, name, descriptor, signature, exceptions);
             }
             return new SystemExitMethodVisitor(
-                    className,
+                    this,
                     name,
+                    descriptor,
                     super.visitMethod(access, name, descriptor, signature, exceptions)
             );
         }
+
+        /**
+         * Called for each call to <code>System.exit()</code> that will be rewritten, before it is.
+         * Without a delegate visitor, as in <code>ExitCallSiteScanner</code>, nothing is rewritten.
+         */
+        void visitExitCall(final String methodName, final String methodDescriptor, final int line) {
+        }
     }
 
     static class SystemExitMethodVisitor extends MethodVisitor {
         private boolean hasSkipAnnotation = false;
+        private final SystemExitClassVisitor classVisitor;
         private final String className;
         private final String methodName;
+        private final String methodDescriptor;
+        private int currentLine = -1;
+        private boolean pushedCoverageProbe = false;
 
-        public SystemExitMethodVisitor(final String className, final String methodName, final MethodVisitor mv) {
+        public SystemExitMethodVisitor(final SystemExitClassVisitor classVisitor,
+                                       final String methodName,
+                                       final String methodDescriptor,
+                                       final MethodVisitor mv) {
             super(Opcodes.ASM9, mv);
-            this.className = className;
+            this.classVisitor = classVisitor;
+            this.className = classVisitor.className;
             this.methodName = methodName;
+            this.methodDescriptor = methodDescriptor;
+        }
+
+        @Override
+        public void visitLineNumber(final int line, final Label start) {
+            currentLine = line;
+            super.visitLineNumber(line, start);
+        }
+
+        @Override
+        public void visitMaxs(final int maxStack, final int maxLocals) {
+            // The probe id sits on top of the exit status, which may be one more than the method needed before.
+            super.visitMaxs(pushedCoverageProbe ? maxStack + 1 : maxStack, maxLocals);
         }
 
         @Override
         public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
-            if(descriptor.endsWith(SKIP_ANNOTATION)) {
+            if(isSkipAnnotation(descriptor)) {
                 hasSkipAnnotation = true;
             }
             return super.visitAnnotation(descriptor, visible);
@@ -132,17 +652,28 @@ public class Junit5SystemExitAgent {
                                     final String name,
                                     final String descriptor,
                                     final boolean isInterface) {
-            if (!hasSkipAnnotation && owner.equals("java/lang/System") && name.equals("exit")) {
-                log.fine("Replacing System.exit() call in: " + className + "." + methodName);
-                super.visitMethodInsn(
-                        Opcodes.INVOKESTATIC,
-                        "com/ginsberg/junit/exit/agent/AgentSystemExitHandlerStrategy",
-                        "handleExit",
-                        descriptor,
-                        false
-                );
+            if (!hasSkipAnnotation && isSystemExit(owner, name)) {
+                classVisitor.visitExitCall(methodName, methodDescriptor, currentLine);
+                if (mv == null) {
+                    return;
+                }
+                if (log.isLoggable(Level.FINE)) {
+                    log.fine("Replacing System.exit() call in: " + className + "." + methodName);
+                }
+                final int callSiteIndex = classVisitor.rewrittenCallSites++;
+                if (classVisitor.callSiteMode == CallSiteMode.INVOKE_DYNAMIC) {
+                    super.visitInvokeDynamicInsn(name, descriptor, EXIT_CALL_SITE_BOOTSTRAP);
+                } else if (ExitCoverage.isEnabled()) {
+                    super.visitLdcInsn(
+                            ExitCoverage.register(className, callSiteIndex, methodName, methodDescriptor, currentLine)
+                    );
+                    pushedCoverageProbe = true;
+                    super.visitMethodInsn(Opcodes.INVOKESTATIC, HANDLER_CLASS, "handleExit", "(II)V", false);
+                } else {
+                    super.visitMethodInsn(Opcodes.INVOKESTATIC, HANDLER_CLASS, "handleExit", descriptor, false);
+                }
             } else {
-                if(hasSkipAnnotation) {
+                if(hasSkipAnnotation && mv != null && log.isLoggable(Level.FINE)) {
                     log.fine("Not replacing System.exit() call in: " + className + "." + methodName + " due to presence of 'skip this' annotation");
                 }
                 super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
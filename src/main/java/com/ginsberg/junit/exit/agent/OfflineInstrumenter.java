@@ -0,0 +1,196 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Rewrites calls to <code>System.exit()</code> in a directory of classes or a jar ahead of time, so tests can
+ * run without the Java Agent. Classes that do not call <code>System.exit()</code>, and every other file,
+ * are copied to the output unchanged. A jar's signature files are left out if any of its classes were rewritten,
+ * because the signature would no longer match.
+ * <p>
+ * Usage: <code>java -cp junit5-system-exit.jar:asm.jar com.ginsberg.junit.exit.agent.OfflineInstrumenter
+ * &lt;input directory or jar&gt; &lt;output directory or jar&gt;</code>
+ * <p>
+ * The output contains a marker resource ({@link AgentSystemExitHandlerStrategy#OFFLINE_MARKER}) which tells
+ * the extension that classes have been rewritten even though the agent has not been loaded.
+ */
+public class OfflineInstrumenter {
+
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String META_INF = "META-INF/";
+    private static final String VERSIONED_PREFIX = META_INF + "versions/";
+
+    private final AtomicInteger classesSeen = new AtomicInteger();
+    private final AtomicInteger classesRewritten = new AtomicInteger();
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException(
+                    "Usage: OfflineInstrumenter <input directory or jar> <output directory or jar>"
+            );
+        }
+        final OfflineInstrumenter instrumenter = new OfflineInstrumenter();
+        instrumenter.instrument(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println(
+                "Rewrote " + instrumenter.classesRewritten.get() + " of " + instrumenter.classesSeen.get() +
+                        " classes from " + args[0] + " into " + args[1]
+        );
+    }
+
+    void instrument(final Path input, final Path output) throws IOException {
+        if (Files.isDirectory(input)) {
+            instrumentDirectory(input, output);
+        } else if (Files.isRegularFile(input)) {
+            instrumentJar(input, output);
+        } else {
+            throw new IllegalArgumentException("Input does not exist: " + input);
+        }
+    }
+
+    private void instrumentDirectory(final Path input, final Path output) throws IOException {
+        final List<Path> files;
+        try (final Stream<Path> walk = Files.walk(input)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        try {
+            files.parallelStream().forEach(file -> {
+                try {
+                    final String name = input.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                    final Path target = output.resolve(input.relativize(file).toString());
+                    Files.createDirectories(target.getParent());
+                    final byte[] original = Files.readAllBytes(file);
+                    Files.write(target, instrumentEntry(name, original));
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+        final Path marker = output.resolve(AgentSystemExitHandlerStrategy.OFFLINE_MARKER);
+        Files.createDirectories(marker.getParent());
+        Files.write(marker, new byte[0]);
+    }
+
+    private void instrumentJar(final Path input, final Path output) throws IOException {
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (final ZipFile zip = new ZipFile(input.toFile())) {
+            final List<ZipEntry> entries = Collections.list(zip.entries()).stream()
+                    .filter(entry -> !entry.getName().equals(AgentSystemExitHandlerStrategy.OFFLINE_MARKER))
+                    .collect(Collectors.toList());
+            final int rewrittenBefore = classesRewritten.get();
+
+            // Rewrite in parallel, but write the entries back out in their original order.
+            final List<byte[]> contents;
+            try {
+                contents = entries.parallelStream()
+                        .map(entry -> {
+                            try (final InputStream in = zip.getInputStream(entry)) {
+                                return entry.isDirectory() ? null : instrumentEntry(entry.getName(), in.readAllBytes());
+                            } catch (final IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        })
+                        .collect(Collectors.toCollection(ArrayList::new));
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // A signature no longer matches once a class in the jar has been rewritten, and would stop it loading.
+            final boolean dropSignatures = classesRewritten.get() > rewrittenBefore;
+            try (final OutputStream out = Files.newOutputStream(output);
+                 final JarOutputStream jar = new JarOutputStream(out)) {
+                for (int i = 0; i < entries.size(); i++) {
+                    final ZipEntry original = entries.get(i);
+                    if (dropSignatures && isSignatureFile(original.getName())) {
+                        continue;
+                    }
+                    final ZipEntry entry = new ZipEntry(original.getName());
+                    entry.setTime(original.getTime());
+                    jar.putNextEntry(entry);
+                    if (contents.get(i) != null) {
+                        jar.write(contents.get(i));
+                    }
+                    jar.closeEntry();
+                }
+                jar.putNextEntry(new ZipEntry(AgentSystemExitHandlerStrategy.OFFLINE_MARKER));
+                jar.closeEntry();
+            }
+        }
+    }
+
+    // Returns the bytes to write for the given entry, which are the original bytes unless we rewrote something.
+    private byte[] instrumentEntry(final String name, final byte[] original) {
+        if (!name.endsWith(CLASS_SUFFIX) || name.endsWith("module-info" + CLASS_SUFFIX)) {
+            return original;
+        }
+        classesSeen.incrementAndGet();
+        if (!ConstantPoolScanner.referencesSystemExit(original)) {
+            return original;
+        }
+        final byte[] rewritten = Junit5SystemExitAgent.rewrite(className(name), original);
+        if (rewritten == null) {
+            return original;
+        }
+        classesRewritten.incrementAndGet();
+        return rewritten;
+    }
+
+    private static boolean isSignatureFile(final String name) {
+        if (!name.startsWith(META_INF) || name.indexOf('/', META_INF.length()) >= 0) {
+            return false;
+        }
+        final String file = name.substring(META_INF.length()).toUpperCase(Locale.ROOT);
+        return file.endsWith(".SF") || file.endsWith(".RSA") || file.endsWith(".DSA") || file.endsWith(".EC") ||
+                file.startsWith("SIG-");
+    }
+
+    private static String className(final String name) {
+        String className = name.substring(0, name.length() - CLASS_SUFFIX.length());
+        if (className.startsWith(VERSIONED_PREFIX)) {
+            className = className.substring(className.indexOf('/', VERSIONED_PREFIX.length()) + 1);
+        }
+        return className;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Determines whether a class name starts with any of a set of prefixes, with a single binary search and
+ * without allocating.
+ * <p>
+ * Prefixes are kept sorted, and any prefix made redundant by a shorter one is removed. In such a list,
+ * the only prefix that can match a name is the greatest prefix that sorts before (or equal to) that name.
+ */
+final class PrefixMatcher {
+
+    private final String[] prefixes;
+
+    private PrefixMatcher(final String[] prefixes) {
+        this.prefixes = prefixes;
+    }
+
+    static PrefixMatcher of(final Collection<String> prefixes) {
+        final List<String> minimal = new ArrayList<>();
+        for (final String prefix : new TreeSet<>(prefixes)) {
+            if (minimal.isEmpty() || !prefix.startsWith(minimal.get(minimal.size() - 1))) {
+                minimal.add(prefix);
+            }
+        }
+        return new PrefixMatcher(minimal.toArray(new String[0]));
+    }
+
+    boolean isEmpty() {
+        return prefixes.length == 0;
+    }
+
+    boolean matches(final String name) {
+        final int index = Arrays.binarySearch(prefixes, name);
+        if (index >= 0) {
+            return true;
+        }
+        final int floor = -index - 2;
+        return floor >= 0 && name.startsWith(prefixes[floor]);
+    }
+}
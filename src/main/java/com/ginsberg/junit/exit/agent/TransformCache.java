@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A content-addressed, on-disk cache of the results of rewriting classes. This is meant to be shared between
+ * test JVMs (forks) and builds, so the same class is only ever rewritten once.
+ * <p>
+ * Each entry is a file named for the SHA-256 hash of the original class bytes. A rewritten class is stored as
+ * the rewritten bytes, and a class the agent decided not to change is stored as an empty file. Entries are
+ * written to a temporary file and atomically moved into place so concurrent JVMs never see a partial entry,
+ * and no shared index needs to be locked.
+ */
+final class TransformCache {
+
+    private final static Logger log = Logger.getLogger(TransformCache.class.getName());
+
+    /**
+     * Returned from {@link #get(byte[])} when the class is known not to need rewriting.
+     */
+    static final byte[] UNCHANGED = new byte[0];
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final byte[] fingerprint;
+
+    /**
+     * @param directory   where to store cached classes
+     * @param fingerprint anything that changes how classes are rewritten, such as the version of this library,
+     *                    so results from different configurations are never mixed
+     */
+    TransformCache(final Path directory, final String fingerprint) {
+        this.directory = directory;
+        this.fingerprint = fingerprint.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the rewritten class, {@link #UNCHANGED} if the class does not need rewriting, or null if this
+     * class has not been seen before (or cannot be read)
+     */
+    byte[] get(final byte[] classFile) {
+        final Path entry = entryFor(classFile);
+        try {
+            final byte[] cached = Files.readAllBytes(entry);
+            return cached.length == 0 ? UNCHANGED : cached;
+        } catch (final NoSuchFileException e) {
+            return null;
+        } catch (final IOException e) {
+            log.log(Level.FINE, "Unable to read cache entry " + entry, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param classFile the original class
+     * @param rewritten the rewritten class, or null if the class was not changed
+     */
+    void put(final byte[] classFile, final byte[] rewritten) {
+        final Path entry = entryFor(classFile);
+        try {
+            Files.createDirectories(entry.getParent());
+            final Path temp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, rewritten == null ? UNCHANGED : rewritten);
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException e) {
+            log.log(Level.FINE, "Unable to write cache entry " + entry, e);
+        }
+    }
+
+    // Spread entries over 256 directories so no single directory grows too large.
+    private Path entryFor(final byte[] classFile) {
+        final String hash = hash(classFile);
+        return directory.resolve(hash.substring(0, 2)).resolve(hash.substring(2) + ".class");
+    }
+
+    private String hash(final byte[] classFile) {
+        return sha256(fingerprint, classFile);
+    }
+
+    /**
+     * @return the hex encoded SHA-256 hash of all the given bytes, in order
+     */
+    static String sha256(final byte[]... parts) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (final byte[] part : parts) {
+                digest.update(part);
+            }
+            final byte[] hash = digest.digest();
+            final char[] chars = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                chars[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+            }
+            return new String(chars);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every JVM", e);
+        }
+    }
+}
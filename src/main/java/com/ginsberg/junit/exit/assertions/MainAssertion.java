@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.assertions;
+
+import com.ginsberg.junit.exit.runner.MainResult;
+import com.ginsberg.junit.exit.runner.MainRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Assertions about a <code>main()</code> method run in-process by a {@link MainRunner}.
+ */
+public class MainAssertion {
+    private final MainResult result;
+
+    public MainAssertion(final MainResult result) {
+        this.result = result;
+    }
+
+    public static MainAssertion assertThatMain(final Class<?> mainClass, final String... args) {
+        return assertThatMain(MainRunner.of(mainClass), args);
+    }
+
+    /**
+     * Prefer this form when running the same class many times, to avoid looking up <code>main()</code> each time.
+     */
+    public static MainAssertion assertThatMain(final MainRunner runner, final String... args) {
+        return new MainAssertion(runner.run(args));
+    }
+
+    /**
+     * Run <code>main()</code> once per entry, concurrently, and assert that each exits with the expected code.
+     * Every case is run and all mismatches are reported together.
+     *
+     * @param expectedExitCodes the expected exit code for each set of arguments
+     */
+    public static void assertExitCodes(final Class<?> mainClass, final Map<String[], Integer> expectedExitCodes) {
+        assertExitCodes(MainRunner.of(mainClass), expectedExitCodes);
+    }
+
+    /**
+     * @see #assertExitCodes(Class, Map)
+     */
+    public static void assertExitCodes(final MainRunner runner, final Map<String[], Integer> expectedExitCodes) {
+        final List<String[]> argumentLists = new ArrayList<>(expectedExitCodes.keySet());
+        final List<MainResult> results = runner.runAll(argumentLists);
+        assertAll(
+                "Exit codes from " + runner.getMainClass().getName(),
+                IntStream.range(0, argumentLists.size()).mapToObj(i -> () -> {
+                    final String[] args = argumentLists.get(i);
+                    final int expected = expectedExitCodes.get(args);
+                    assertEquals(expected, results.get(i).getExitCode(), () -> "Wrong exit code for " + Arrays.toString(args) + ": " + results.get(i));
+                })
+        );
+    }
+
+    public MainResult getResult() {
+        return result;
+    }
+
+    public MainAssertion callsSystemExit() {
+        if (!result.calledSystemExit()) {
+            fail("Expected call to System.exit() did not happen: " + result, result.getThrown());
+        }
+        return this;
+    }
+
+    public MainAssertion doesNotCallSystemExit() {
+        if (result.calledSystemExit()) {
+            fail("Unexpected call to System.exit() with exit code " + result.getExitCode() +
+                    " (" + result.getExitAttempts().get(0) + ")");
+        }
+        return this;
+    }
+
+    /**
+     * Assert the exit code the process would have had, whether or not <code>System.exit()</code> was called.
+     */
+    public MainAssertion withExitCode(final int code) {
+        assertEquals(code, result.getExitCode(), () -> "Wrong exit code found: " + result);
+        return this;
+    }
+
+    public MainAssertion withStdout(final String expected) {
+        assertEquals(expected, result.getStdout(), "Wrong stdout");
+        return this;
+    }
+
+    public MainAssertion withStdoutContaining(final String expected) {
+        assertTrue(result.getStdout().contains(expected), () -> "Expected stdout to contain <" + expected + "> but was <" + result.getStdout() + ">");
+        return this;
+    }
+
+    public MainAssertion withStderr(final String expected) {
+        assertEquals(expected, result.getStderr(), "Wrong stderr");
+        return this;
+    }
+
+    public MainAssertion withStderrContaining(final String expected) {
+        assertTrue(result.getStderr().contains(expected), () -> "Expected stderr to contain <" + expected + "> but was <" + result.getStderr() + ">");
+        return this;
+    }
+
+    public MainAssertion withEmptyStderr() {
+        return withStderr("");
+    }
+
+    public MainAssertion completedWithin(final Duration limit) {
+        assertTrue(result.getElapsed().compareTo(limit) <= 0, () -> "Expected to complete within " + limit + " but took " + result.getElapsed());
+        return this;
+    }
+}
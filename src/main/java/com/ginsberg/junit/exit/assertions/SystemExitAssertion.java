@@ -24,10 +24,14 @@
 
 package com.ginsberg.junit.exit.assertions;
 
+import com.ginsberg.junit.exit.ExitAttempt;
 import com.ginsberg.junit.exit.ExitPreventerStrategy;
 import com.ginsberg.junit.exit.SystemExitPreventedException;
+import com.ginsberg.junit.exit.agent.AgentAttacher;
 import com.ginsberg.junit.exit.agent.AgentSystemExitHandlerStrategy;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -35,57 +39,76 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 public class SystemExitAssertion {
     private final SystemExitPreventedException theException;
+    private final List<ExitAttempt> exitAttempts;
 
     public SystemExitAssertion(SystemExitPreventedException theException) {
+        this(theException, List.of());
+    }
+
+    public SystemExitAssertion(SystemExitPreventedException theException, List<ExitAttempt> exitAttempts) {
         this.theException = theException;
+        this.exitAttempts = exitAttempts;
     }
 
     public static SystemExitAssertion assertThatCallsSystemExit(final Runnable function) {
-        return new SystemExitAssertion(catchSystemExitFrom(function)).calledSystemExit();
+        return catchSystemExitFrom(function).calledSystemExit();
     }
 
     public static void assertThatDoesNotCallSystemExit(final Runnable function) {
-        new SystemExitAssertion(catchSystemExitFrom(function)).didNotCallSystemExit();
+        catchSystemExitFrom(function).didNotCallSystemExit();
     }
 
     private SystemExitAssertion calledSystemExit() {
-        if (theException == null) {
+        if (theException == null && exitAttempts.isEmpty()) {
             fail("Expected call to System.exit() did not happen");
         }
         return this;
     }
 
     private SystemExitAssertion didNotCallSystemExit() {
-        if (theException != null) {
-            fail("Unexpected call to System.exit() with exit code " + theException.getStatusCode(), theException);
+        if (theException != null || !exitAttempts.isEmpty()) {
+            fail(
+                    "Unexpected call to System.exit() with exit code " + statusCode() +
+                            (exitAttempts.isEmpty() ? "" : " (" + exitAttempts.get(0) + ")"),
+                    theException
+            );
         }
         return this;
     }
 
-    private static SystemExitPreventedException catchSystemExitFrom(final Runnable function) {
+    private static SystemExitAssertion catchSystemExitFrom(final Runnable function) {
+        AgentAttacher.requireAgent();
         final ExitPreventerStrategy exitPreventerStrategy = new AgentSystemExitHandlerStrategy();
+        SystemExitPreventedException caught = null;
         try {
             exitPreventerStrategy.resetBetweenTests();
             exitPreventerStrategy.beforeTest();
             function.run();
         } catch (SystemExitPreventedException e) {
-            return e;
+            caught = e;
         } catch (Exception e) {
             throw new RuntimeException(e);
         } finally {
             exitPreventerStrategy.afterTest();
         }
-        return null;
+        return new SystemExitAssertion(caught, exitPreventerStrategy.exitAttempts());
+    }
+
+    /**
+     * @return every call to <code>System.exit()</code> that was prevented, in the order they happened
+     */
+    public List<ExitAttempt> getExitAttempts() {
+        return exitAttempts;
     }
 
     public SystemExitAssertion withExitCode(final int code) {
-        assertEquals(code, theException.getStatusCode(), "Wrong exit code found");
+        assertEquals(code, statusCode(), "Wrong exit code found");
         return this;
     }
 
     public SystemExitAssertion withExitCodeInRange(final int startInclusive, final int endInclusive) {
         assertTrue(startInclusive < endInclusive, "Start must come before end");
-        final int code = theException.getStatusCode();
+        final int code = statusCode();
         assertTrue(
                 startInclusive <= code && code <= endInclusive,
                 "Exit code expected in range (" + startInclusive + " .. " + endInclusive + ") but was " + code
@@ -93,4 +116,31 @@ public class SystemExitAssertion {
         return this;
     }
 
+    // Exits from other threads started by the code under test are recorded, but don't throw on the calling thread.
+    private int statusCode() {
+        return theException != null ? theException.getStatusCode() : exitAttempts.get(0).getStatusCode();
+    }
+
+    public SystemExitAssertion withAttemptCount(final int count) {
+        assertEquals(count, exitAttempts.size(), "Wrong number of calls to System.exit() found: " + exitAttempts);
+        return this;
+    }
+
+    /**
+     * Assert that the first call to <code>System.exit()</code> was made from the given class.
+     */
+    public SystemExitAssertion calledFrom(final Class<?> caller) {
+        assertTrue(!exitAttempts.isEmpty(), "Expected call to System.exit() did not happen");
+        assertEquals(caller.getName(), exitAttempts.get(0).getCallerClassName(), "System.exit() called from wrong class");
+        return this;
+    }
+
+    /**
+     * Assert that the first call to <code>System.exit()</code> was made from the given method of the given class.
+     */
+    public SystemExitAssertion calledFrom(final Class<?> caller, final String methodName) {
+        calledFrom(caller);
+        assertEquals(methodName, exitAttempts.get(0).getCallerMethodName(), "System.exit() called from wrong method");
+        return this;
+    }
 }
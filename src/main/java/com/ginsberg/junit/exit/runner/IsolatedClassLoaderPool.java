@@ -0,0 +1,189 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.runner;
+
+import com.ginsberg.junit.exit.agent.AgentSystemExitHandlerStrategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a few {@link IsolatedClassLoader}s ready, with the main class already loaded (and so already rewritten by
+ * the agent), so taking one doesn't pay the cost of loading it. Each loader is used once and then discarded, and a
+ * replacement is prepared in the background. Closing the pool closes the loaders it still holds, and stops it from
+ * preparing more.
+ */
+class IsolatedClassLoaderPool implements AutoCloseable {
+
+    private final static Logger log = Logger.getLogger(IsolatedClassLoaderPool.class.getName());
+    private static final String LIBRARY_MARKER = AgentSystemExitHandlerStrategy.class.getName().replace('.', '/') + ".class";
+    private static final ExecutorService refiller = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "junit5-system-exit-loader-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile URL[] isolatedClassPath;
+
+    private final String mainClassName;
+    private final ClassLoader parent;
+    private final BlockingQueue<IsolatedClassLoader> ready;
+    private final AtomicInteger openLoaders = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    IsolatedClassLoaderPool(final Class<?> mainClass, final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1, but was " + size);
+        }
+        this.mainClassName = mainClass.getName();
+        this.parent = mainClass.getClassLoader();
+        this.ready = new LinkedBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            refiller.execute(this::refill);
+        }
+    }
+
+    /**
+     * @return a class loader that has not been used before. The caller must {@link #discard} it when finished.
+     * @throws IllegalStateException if the pool has been closed
+     */
+    IsolatedClassLoader take() {
+        if (closed) {
+            throw new IllegalStateException("Isolated class loader pool for " + mainClassName + " has been closed");
+        }
+        IsolatedClassLoader loader = ready.poll();
+        if (loader == null) {
+            // The pool couldn't keep up, so don't wait on it.
+            loader = create();
+        }
+        refiller.execute(this::refill);
+        return loader;
+    }
+
+    private void refill() {
+        if (closed) {
+            return;
+        }
+        final IsolatedClassLoader loader = create();
+        if (!ready.offer(loader)) {
+            discard(loader);
+        } else if (closed && ready.remove(loader)) {
+            // Closed while this loader was being prepared, after close() had drained the pool.
+            discard(loader);
+        }
+    }
+
+    private IsolatedClassLoader create() {
+        final IsolatedClassLoader loader = new IsolatedClassLoader(isolatedClassPath(), parent);
+        openLoaders.incrementAndGet();
+        try {
+            // Load without initializing, so static initializers run as part of main(), as they would in a new JVM.
+            Class.forName(mainClassName, false, loader);
+        } catch (final ClassNotFoundException | LinkageError e) {
+            log.log(Level.FINE, e, () -> "Could not preload " + mainClassName);
+        }
+        return loader;
+    }
+
+    void discard(final IsolatedClassLoader loader) {
+        openLoaders.decrementAndGet();
+        try {
+            loader.close();
+        } catch (final IOException e) {
+            log.log(Level.FINE, "Could not close isolated class loader", e);
+        }
+    }
+
+    /**
+     * Close every loader that is ready and not yet taken. Loaders already taken are closed by whoever took them.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        IsolatedClassLoader loader;
+        while ((loader = ready.poll()) != null) {
+            discard(loader);
+        }
+    }
+
+    /**
+     * @return how many loaders this pool has created and not yet closed
+     */
+    int openLoaders() {
+        return openLoaders.get();
+    }
+
+    /**
+     * The application class path, without whichever entries hold this library. Those must be loaded by the parent
+     * only, or classes rewritten by the agent would call a different copy of the handler.
+     */
+    private static URL[] isolatedClassPath() {
+        if (isolatedClassPath == null) {
+            final List<URL> urls = new ArrayList<>();
+            for (final String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                final Path path = Paths.get(entry);
+                if (!containsLibrary(path)) {
+                    try {
+                        urls.add(path.toUri().toURL());
+                    } catch (final MalformedURLException e) {
+                        log.log(Level.FINE, "Skipping class path entry " + entry, e);
+                    }
+                }
+            }
+            isolatedClassPath = urls.toArray(new URL[0]);
+        }
+        return isolatedClassPath;
+    }
+
+    private static boolean containsLibrary(final Path path) {
+        if (Files.isDirectory(path)) {
+            return Files.exists(path.resolve(LIBRARY_MARKER));
+        }
+        if (Files.isRegularFile(path)) {
+            try (JarFile jar = new JarFile(path.toFile())) {
+                return jar.getEntry(LIBRARY_MARKER) != null;
+            } catch (final IOException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
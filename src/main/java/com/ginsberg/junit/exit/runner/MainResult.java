@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.runner;
+
+import com.ginsberg.junit.exit.ExitAttempt;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The outcome of running a <code>main()</code> method in-process with a {@link MainRunner}.
+ */
+public class MainResult {
+
+    private final Integer exitStatusCode;
+    private final List<ExitAttempt> exitAttempts;
+    private final Throwable thrown;
+    private final String stdout;
+    private final String stderr;
+    private final Duration elapsed;
+
+    MainResult(final Integer exitStatusCode,
+               final List<ExitAttempt> exitAttempts,
+               final Throwable thrown,
+               final String stdout,
+               final String stderr,
+               final Duration elapsed) {
+        this.exitStatusCode = exitStatusCode;
+        this.exitAttempts = exitAttempts;
+        this.thrown = thrown;
+        this.stdout = stdout;
+        this.stderr = stderr;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return true if <code>main()</code> called <code>System.exit()</code>
+     */
+    public boolean calledSystemExit() {
+        return exitStatusCode != null;
+    }
+
+    /**
+     * @return the status code the process would have exited with: the first status passed to
+     * <code>System.exit()</code> if it was called, 1 if <code>main()</code> threw an exception, otherwise 0.
+     */
+    public int getExitCode() {
+        if (exitStatusCode != null) {
+            return exitStatusCode;
+        }
+        return thrown == null ? 0 : 1;
+    }
+
+    /**
+     * @return every call to <code>System.exit()</code> that was prevented, in the order they happened
+     */
+    public List<ExitAttempt> getExitAttempts() {
+        return exitAttempts;
+    }
+
+    /**
+     * @return the exception thrown out of <code>main()</code>, other than the one preventing
+     * <code>System.exit()</code>, or null
+     */
+    public Throwable getThrown() {
+        return thrown;
+    }
+
+    public String getStdout() {
+        return stdout;
+    }
+
+    public String getStderr() {
+        return stderr;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "MainResult{exitCode=" + getExitCode() +
+                ", calledSystemExit=" + calledSystemExit() +
+                ", elapsed=" + elapsed +
+                (thrown == null ? "" : ", thrown=" + thrown) +
+                "}";
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.runner;
+
+import com.ginsberg.junit.exit.SystemExitPreventedException;
+import com.ginsberg.junit.exit.agent.AgentAttacher;
+import com.ginsberg.junit.exit.agent.AgentSystemExitHandlerStrategy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a <code>main(String[])</code> method in this JVM, as many times as needed, capturing its exit code, output,
+ * and elapsed time. Calls to <code>System.exit()</code> are prevented by the agent, so this needs the agent or
+ * classes instrumented ahead of time, just like {@link com.ginsberg.junit.exit.SystemExitExtension}.
+ * <p>
+ * Runs may happen concurrently on different threads; each sees only its own exits and output. By default, runs share
+ * any static state in the code under test. Use {@link #isolated()} to give each run its own copy of the classes, and
+ * close the isolated runner when finished with it.
+ */
+public class MainRunner implements AutoCloseable {
+
+    private static final MethodType MAIN_TYPE = MethodType.methodType(void.class, String[].class);
+    private static final int DEFAULT_POOL_SIZE = 4;
+
+    private final Class<?> mainClass;
+    private final MethodHandle mainMethod;
+    private final IsolatedClassLoaderPool loaderPool;
+
+    private MainRunner(final Class<?> mainClass, final MethodHandle mainMethod, final IsolatedClassLoaderPool loaderPool) {
+        this.mainClass = mainClass;
+        this.mainMethod = mainMethod;
+        this.loaderPool = loaderPool;
+    }
+
+    /**
+     * @param mainClass a class with a <code>public static void main(String[])</code> method
+     * @throws IllegalArgumentException if the class has no such method
+     */
+    public static MainRunner of(final Class<?> mainClass) {
+        AgentAttacher.requireAgent();
+        return new MainRunner(mainClass, findMain(mainClass), null);
+    }
+
+    private static MethodHandle findMain(final Class<?> mainClass) {
+        try {
+            return MethodHandles.publicLookup().findStatic(mainClass, "main", MAIN_TYPE);
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("No public static void main(String[]) method in " + mainClass.getName(), e);
+        }
+    }
+
+    /**
+     * @return a runner that loads a fresh copy of the main class, and everything else from the application class
+     * path, for every run. Static state doesn't leak from one run to the next, as if each ran in its own JVM. Class
+     * loaders are prepared ahead of time in the background, and classes already rewritten by the agent are not
+     * rewritten again. Close the returned runner when finished, to close the class loaders it has prepared.
+     */
+    public MainRunner isolated() {
+        return isolated(DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param poolSize how many class loaders to keep ready
+     * @see #isolated()
+     */
+    public MainRunner isolated(final int poolSize) {
+        return new MainRunner(mainClass, mainMethod, new IsolatedClassLoaderPool(mainClass, poolSize));
+    }
+
+    public boolean isIsolated() {
+        return loaderPool != null;
+    }
+
+    public Class<?> getMainClass() {
+        return mainClass;
+    }
+
+    /**
+     * Run <code>main()</code> with the given arguments and wait for it to return.
+     */
+    public MainResult run(final String... args) {
+        if (loaderPool == null) {
+            return run(mainMethod, mainClass.getName(), args);
+        }
+        final IsolatedClassLoader loader = loaderPool.take();
+        final Thread thread = Thread.currentThread();
+        final ClassLoader previousContextLoader = thread.getContextClassLoader();
+        try {
+            thread.setContextClassLoader(loader);
+            return run(findMain(Class.forName(mainClass.getName(), false, loader)), mainClass.getName(), args);
+        } catch (final ClassNotFoundException e) {
+            throw new IllegalStateException("Could not load " + mainClass.getName() + " in an isolated class loader", e);
+        } finally {
+            thread.setContextClassLoader(previousContextLoader);
+            loaderPool.discard(loader);
+        }
+    }
+
+    /**
+     * Close the class loaders prepared for isolated runs. Runners that are not isolated have nothing to close.
+     */
+    @Override
+    public void close() {
+        if (loaderPool != null) {
+            loaderPool.close();
+        }
+    }
+
+    /**
+     * Run <code>main()</code> once for each set of arguments, concurrently, and wait for them all to finish.
+     *
+     * @return one result per set of arguments, in the same order
+     */
+    public List<MainResult> runAll(final Collection<String[]> argumentLists) {
+        if (argumentLists.isEmpty()) {
+            return List.of();
+        }
+        final int threads = Math.min(argumentLists.size(), Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "junit5-system-exit-runner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<MainResult>> futures = new ArrayList<>(argumentLists.size());
+            for (final String[] args : argumentLists) {
+                futures.add(executor.submit(() -> run(args)));
+            }
+            final List<MainResult> results = new ArrayList<>(futures.size());
+            for (final Future<MainResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running " + mainClass.getName(), e);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException("Could not run " + mainClass.getName(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static MainResult run(final MethodHandle mainMethod, final String testId, final String[] args) {
+        final AgentSystemExitHandlerStrategy strategy = new AgentSystemExitHandlerStrategy(testId);
+        final OutputCapture output = OutputCapture.begin();
+        Throwable thrown = null;
+        final long start = System.nanoTime();
+        try {
+            strategy.beforeTest();
+            mainMethod.invokeExact(args);
+        } catch (final SystemExitPreventedException e) {
+            // Recorded by the strategy
+        } catch (final Throwable e) {
+            thrown = e;
+        } finally {
+            strategy.afterTest();
+            output.end();
+        }
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        return new MainResult(
+                strategy.firstExitStatusCode(),
+                strategy.exitAttempts(),
+                thrown,
+                output.stdout(),
+                output.stderr(),
+                elapsed
+        );
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.runner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+
+/**
+ * Replaces <code>System.out</code> and <code>System.err</code> with streams that write to a per-run buffer when the
+ * writing thread belongs to a run, and to the original stream otherwise. Runs on different threads don't see each
+ * other's output, and threads started by a run write to that run's buffers. The original streams are put back once
+ * no run is capturing.
+ */
+final class OutputCapture {
+
+    private static final InheritableThreadLocal<OutputCapture> currentCapture = new InheritableThreadLocal<>();
+    private static RoutedPrintStream routedOut;
+    private static RoutedPrintStream routedErr;
+    private static int activeCaptures;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private final OutputCapture previous;
+    private volatile boolean capturing = true;
+
+    private OutputCapture(final OutputCapture previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Start capturing output written by the current thread, and by threads it starts.
+     */
+    static OutputCapture begin() {
+        install();
+        final OutputCapture capture = new OutputCapture(currentCapture.get());
+        currentCapture.set(capture);
+        return capture;
+    }
+
+    /**
+     * Stop capturing. Anything written afterwards, even by threads that were started during the run, goes to the
+     * original streams.
+     */
+    void end() {
+        if (!capturing) {
+            return;
+        }
+        capturing = false;
+        if (previous == null) {
+            currentCapture.remove();
+        } else {
+            currentCapture.set(previous);
+        }
+        uninstall();
+    }
+
+    String stdout() {
+        return text(out);
+    }
+
+    String stderr() {
+        return text(err);
+    }
+
+    private static String text(final ByteArrayOutputStream buffer) {
+        synchronized (buffer) {
+            return buffer.toString(Charset.defaultCharset());
+        }
+    }
+
+    // Install while any run is capturing, and again if something else has replaced System.out or System.err since.
+    private static synchronized void install() {
+        activeCaptures++;
+        if (System.out != routedOut) {
+            routedOut = route(System.out, true);
+            System.setOut(routedOut);
+        }
+        if (System.err != routedErr) {
+            routedErr = route(System.err, false);
+            System.setErr(routedErr);
+        }
+    }
+
+    // A stream that is already routed, such as one put back by whatever replaced it, is used as it is.
+    private static RoutedPrintStream route(final PrintStream stream, final boolean isOut) {
+        return stream instanceof RoutedPrintStream ? (RoutedPrintStream) stream : new RoutedPrintStream(stream, isOut);
+    }
+
+    // Streams that something else has put in place since are theirs to put back, so they are left alone.
+    private static synchronized void uninstall() {
+        if (--activeCaptures > 0) {
+            return;
+        }
+        if (System.out == routedOut) {
+            System.setOut(routedOut.original);
+        }
+        if (System.err == routedErr) {
+            System.setErr(routedErr.original);
+        }
+        routedOut = null;
+        routedErr = null;
+    }
+
+    private static class RoutedPrintStream extends PrintStream {
+        private final PrintStream original;
+
+        RoutedPrintStream(final PrintStream original, final boolean isOut) {
+            super(new RoutingOutputStream(original, isOut), true);
+            this.original = original;
+        }
+    }
+
+    private static class RoutingOutputStream extends OutputStream {
+        private final PrintStream original;
+        private final boolean isOut;
+
+        RoutingOutputStream(final PrintStream original, final boolean isOut) {
+            this.original = original;
+            this.isOut = isOut;
+        }
+
+        private ByteArrayOutputStream target() {
+            final OutputCapture capture = currentCapture.get();
+            if (capture == null || !capture.capturing) {
+                return null;
+            }
+            return isOut ? capture.out : capture.err;
+        }
+
+        @Override
+        public void write(final int b) {
+            final ByteArrayOutputStream target = target();
+            if (target == null) {
+                original.write(b);
+            } else {
+                synchronized (target) {
+                    target.write(b);
+                }
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            final ByteArrayOutputStream target = target();
+            if (target == null) {
+                original.write(b, off, len);
+            } else {
+                synchronized (target) {
+                    target.write(b, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (target() == null) {
+                original.flush();
+            }
+        }
+    }
+}
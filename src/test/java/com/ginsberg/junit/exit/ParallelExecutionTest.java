@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.ginsberg.junit.exit.TestUtils.assertTestsSucceedInParallel;
+
+class ParallelExecutionTest {
+
+    @Test
+    @DisplayName("Tests running in parallel each see only their own System.exit() calls")
+    void parallelTestsAreIsolated() {
+        assertTestsSucceedInParallel(ExitsInParallelTest.class, 4);
+    }
+
+    @SuppressWarnings("JUnitMalformedDeclaration")
+    @EnabledIfSystemProperty(named = "running_within_test", matches = "true")
+    @ExpectSystemExit
+    static class ExitsInParallelTest {
+        // Hold each test until they are all running, so their exits overlap.
+        private static final CountDownLatch allRunning = new CountDownLatch(4);
+
+        @Test
+        @ExpectSystemExitWithStatus(1)
+        void exitWith1() throws InterruptedException {
+            exitWhenAllRunning(1);
+        }
+
+        @Test
+        @ExpectSystemExitWithStatus(2)
+        void exitWith2() throws InterruptedException {
+            exitWhenAllRunning(2);
+        }
+
+        @Test
+        @ExpectSystemExitWithStatus(3)
+        void exitWith3() throws InterruptedException {
+            exitWhenAllRunning(3);
+        }
+
+        @Test
+        @ExpectSystemExitWithStatus(4)
+        void exitWith4() throws InterruptedException {
+            exitWhenAllRunning(4);
+        }
+
+        private static void exitWhenAllRunning(final int status) throws InterruptedException {
+            allRunning.countDown();
+            allRunning.await(5, TimeUnit.SECONDS);
+            System.exit(status);
+        }
+    }
+}
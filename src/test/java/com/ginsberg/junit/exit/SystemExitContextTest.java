@@ -0,0 +1,170 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit;
+
+import com.ginsberg.junit.exit.agent.AgentSystemExitHandlerStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.ginsberg.junit.exit.assertions.SystemExitAssertion.assertThatCallsSystemExit;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SystemExitContextTest {
+
+    private ExecutorService pool;
+    private AgentSystemExitHandlerStrategy otherTest;
+    private Thread otherTestThread;
+    private final CountDownLatch otherTestDone = new CountDownLatch(1);
+
+    @BeforeEach
+    void startPoolAndAnotherTest() throws Exception {
+        // Start the pool thread before any test is running, so it doesn't inherit one.
+        pool = Executors.newSingleThreadExecutor();
+        pool.submit(() -> { }).get();
+
+        // Another test running at the same time means exits can't just be given to the only running test.
+        otherTest = new AgentSystemExitHandlerStrategy();
+        final CountDownLatch otherTestStarted = new CountDownLatch(1);
+        otherTestThread = new Thread(() -> {
+            otherTest.beforeTest();
+            otherTestStarted.countDown();
+            try {
+                otherTestDone.await(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                otherTest.afterTest();
+            }
+        });
+        otherTestThread.start();
+        otherTestStarted.await(10, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    void stopPoolAndOtherTest() throws InterruptedException {
+        otherTestDone.countDown();
+        otherTestThread.join();
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("System.exit() on a thread started by the test is attributed to that test")
+    void childThread() {
+        assertThatCallsSystemExit(() -> {
+            final Thread child = new Thread(() -> System.exit(3));
+            child.setUncaughtExceptionHandler((thread, e) -> { });
+            child.start();
+            joinQuietly(child);
+        }).withExitCode(3).withAttemptCount(1);
+        assertThat(otherTest.exitAttempts()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("System.exit() in a wrapped task on a pooled thread is attributed to the test that submitted it")
+    void wrappedExecutor() {
+        final Executor wrapped = SystemExitContext.wrap(pool);
+        assertThatCallsSystemExit(() -> {
+            final CompletableFuture<Void> future = CompletableFuture.runAsync(() -> System.exit(4), wrapped);
+            assertThrows(CompletionException.class, future::join);
+        }).withExitCode(4).withAttemptCount(1);
+        assertThat(otherTest.exitAttempts()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("System.exit() on a pooled thread without wrapping is prevented but not attributed")
+    void unwrappedExecutor() {
+        final AgentSystemExitHandlerStrategy thisTest = new AgentSystemExitHandlerStrategy();
+        thisTest.beforeTest();
+        try {
+            final CompletableFuture<Void> future = CompletableFuture.runAsync(() -> System.exit(5), pool);
+            assertThrows(CompletionException.class, future::join);
+        } finally {
+            thisTest.afterTest();
+        }
+        assertThat(thisTest.exitAttempts()).isEmpty();
+        assertThat(otherTest.exitAttempts()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("System.exit() on a thread left running by a finished test is not attributed to the test running now")
+    void threadLeakedFromFinishedTest() throws InterruptedException {
+        final AgentSystemExitHandlerStrategy finishedTest = new AgentSystemExitHandlerStrategy();
+        final CountDownLatch exitNow = new CountDownLatch(1);
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+        final Thread leaked;
+        finishedTest.beforeTest();
+        try {
+            leaked = new Thread(() -> {
+                try {
+                    exitNow.await(10, TimeUnit.SECONDS);
+                    System.exit(6);
+                } catch (final Throwable e) {
+                    thrown.set(e);
+                }
+            });
+            leaked.start();
+        } finally {
+            finishedTest.afterTest();
+        }
+
+        // The other test is now the only one running.
+        exitNow.countDown();
+        leaked.join();
+
+        assertInstanceOf(SystemExitPreventedException.class, thrown.get());
+        assertThat(otherTest.exitAttempts()).isEmpty();
+        assertNull(otherTest.firstExitStatusCode());
+        assertThat(finishedTest.exitAttempts()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Tasks are not wrapped when no test is running on the current thread")
+    void nothingToWrap() {
+        final Runnable task = () -> { };
+        assertSame(task, SystemExitContext.wrap(task));
+    }
+
+    private static void joinQuietly(final Thread thread) {
+        try {
+            thread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
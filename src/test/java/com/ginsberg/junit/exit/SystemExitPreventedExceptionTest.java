@@ -0,0 +1,52 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SystemExitPreventedExceptionTest {
+
+    @Test
+    @DisplayName("Stack trace is captured by default")
+    void capturesStackTrace() {
+        final SystemExitPreventedException exception = new SystemExitPreventedException(1);
+
+        assertThat(exception.getStatusCode()).isEqualTo(1);
+        assertThat(exception.getStackTrace()).isNotEmpty();
+        assertThat(exception.getStackTrace()[0].getMethodName()).isEqualTo("capturesStackTrace");
+    }
+
+    @Test
+    @DisplayName("Stack trace is not captured when not writable")
+    void stacklessException() {
+        final SystemExitPreventedException exception = new SystemExitPreventedException(2, false);
+
+        assertThat(exception.getStatusCode()).isEqualTo(2);
+        assertThat(exception.getStackTrace()).isEmpty();
+    }
+}
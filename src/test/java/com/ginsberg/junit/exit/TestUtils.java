@@ -30,15 +30,22 @@ import org.junit.platform.launcher.core.LauncherFactory;
 import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
 import org.junit.platform.launcher.listeners.TestExecutionSummary;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
 import static org.junit.platform.engine.discovery.DiscoverySelectors.selectMethod;
 
-class TestUtils {
+public class TestUtils {
 
     static void assertTestFails(final Class<?> clazz, final String testMethod) {
         final SummaryGeneratingListener listener = executeTest(clazz, testMethod);
@@ -105,11 +112,35 @@ class TestUtils {
         assertEquals(1, listener.getSummary().getTestsSucceededCount(), "Single test should have succeeded");
     }
 
+    static void assertTestsSucceedInParallel(final Class<?> clazz, final int expectedTests) {
+        final SummaryGeneratingListener listener = executeTest(
+                clazz,
+                null,
+                Map.of(
+                        "junit.jupiter.execution.parallel.enabled", "true",
+                        "junit.jupiter.execution.parallel.mode.default", "concurrent",
+                        "junit.jupiter.execution.parallel.config.strategy", "fixed",
+                        "junit.jupiter.execution.parallel.config.fixed.parallelism", String.valueOf(expectedTests)
+                )
+        );
+
+        assertEquals(expectedTests, listener.getSummary().getTestsFoundCount(), "Wrong number of tests found");
+        assertEquals(expectedTests, listener.getSummary().getTestsSucceededCount(), "All tests should have succeeded");
+    }
+
+    private static SummaryGeneratingListener executeTest(final Class<?> clazz, final String testMethod) {
+        return executeTest(clazz, testMethod, Map.of());
+    }
+
     /**
      * Execute the given test and then return a summary of its execution. This is used for tests that
      * succeed when other tests fail ("Test that a test decorated with X fails when...")
      */
-    private static SummaryGeneratingListener executeTest(final Class<?> clazz, final String testMethod) {
+    private static SummaryGeneratingListener executeTest(
+            final Class<?> clazz,
+            final String testMethod,
+            final Map<String, String> configurationParameters
+    ) {
         final SummaryGeneratingListener listener = new SummaryGeneratingListener();
         try {
             System.setProperty("running_within_test", "true");
@@ -119,6 +150,7 @@ class TestUtils {
                                     selectClass(clazz) :
                                     selectMethod(clazz, testMethod)
                     )
+                    .configurationParameters(configurationParameters)
                     .build();
 
             LauncherFactory.create().execute(request, listener);
@@ -128,4 +160,34 @@ class TestUtils {
         }
     }
 
+    // Read from the resource rather than the loaded class, so we see the bytes before the agent rewrites them.
+    public static byte[] classBytes(final Class<?> clazz) throws IOException {
+        final String resource = "/" + clazz.getName().replace('.', '/') + ".class";
+        try (final InputStream in = clazz.getResourceAsStream(resource)) {
+            return in.readAllBytes();
+        }
+    }
+
+    public static void write(final Path path, final byte[] content) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+    }
+
+    public static void putEntry(final JarOutputStream jar, final String name, final byte[] content) throws IOException {
+        jar.putNextEntry(new ZipEntry(name));
+        jar.write(content);
+        jar.closeEntry();
+    }
+
+    public static class CallsExit {
+        void exit() {
+            System.exit(1);
+        }
+    }
+
+    public static class DoesNotCallExit {
+        long now() {
+            return Math.max(1L, 2L);
+        }
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.SystemExitPreventedException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgentAttacherTest {
+
+    @Test
+    @DisplayName("The agent is already loaded for this test JVM, so there is nothing to attach")
+    void alreadyLoaded() {
+        assertTrue(AgentAttacher.ensureAgentLoaded());
+    }
+
+    @Test
+    @DisplayName("A JVM started without the agent attaches it itself, and rewrites classes loaded before and after")
+    void attachesToSelf() throws Exception {
+        final String output = runWithoutAgent("-Djdk.attach.allowAttachSelf=true");
+        assertThat(output).contains("attached=true", "early prevented 3", "late prevented 3");
+        assertThat(output).doesNotContain("helper process");
+    }
+
+    @Test
+    @DisplayName("A JVM that may not attach to itself uses a helper process")
+    void attachesFromHelper() throws Exception {
+        final String output = runWithoutAgent("-Djdk.attach.allowAttachSelf=false");
+        assertThat(output).contains(
+                "attached=true", "early prevented 3", "late prevented 3",
+                "Attaching the agent from a helper process, waiting up to 30 seconds"
+        );
+    }
+
+    @Test
+    @DisplayName("The helper process timeout can be configured")
+    void helperTimeout() throws Exception {
+        final String output = runWithoutAgent("-Djdk.attach.allowAttachSelf=false", "-D" + AgentAttacher.TIMEOUT_PROPERTY + "=45");
+        assertThat(output).contains("attached=true", "waiting up to 45 seconds");
+    }
+
+    @Test
+    @DisplayName("A JVM without the jdk.attach module doesn't try a helper process")
+    void noAttachModule() throws Exception {
+        final String output = runWithoutAgent("--limit-modules", "java.se,jdk.jfr,jdk.unsupported");
+        assertThat(output).contains("attached=false", "doesn't include the jdk.attach module");
+        assertThat(output).doesNotContain("helper process");
+    }
+
+    private static String runWithoutAgent(final String... jvmArgs) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(List.of(jvmArgs));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(AttachesLazily.class.getName());
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue(), output);
+        return output;
+    }
+
+    // Runs in its own JVM, without the agent
+    static class AttachesLazily {
+        static class Early {
+            static void exit() {
+                System.exit(3);
+            }
+        }
+
+        static class Late {
+            static void exit() {
+                System.exit(4);
+            }
+        }
+
+        public static void main(final String[] args) throws ClassNotFoundException {
+            Class.forName(Early.class.getName());
+            final boolean attached = AgentAttacher.ensureAgentLoaded();
+            System.out.println("attached=" + attached);
+            if (!attached) {
+                return;
+            }
+            final AgentSystemExitHandlerStrategy strategy = new AgentSystemExitHandlerStrategy();
+            strategy.beforeTest();
+            try {
+                try {
+                    Early.exit();
+                } catch (final SystemExitPreventedException e) {
+                    System.out.println("early prevented " + e.getStatusCode());
+                }
+                try {
+                    Late.exit();
+                } catch (final SystemExitPreventedException e) {
+                    System.out.println("late prevented " + e.getStatusCode());
+                }
+            } finally {
+                strategy.afterTest();
+            }
+        }
+    }
+}
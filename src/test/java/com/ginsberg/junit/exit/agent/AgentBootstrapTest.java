@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.TestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
+
+import static com.ginsberg.junit.exit.TestUtils.classBytes;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class AgentBootstrapTest {
+
+    @Test
+    @DisplayName("The test JVM is started with the bootstrap as its agent")
+    void installed() {
+        assertTrue(AgentBootstrap.isInstalled());
+        assertTrue(AgentSystemExitHandlerStrategy.isLoadedFromAgent());
+    }
+
+    @Test
+    @DisplayName("ASM isn't loaded until the first class that calls System.exit() is")
+    void startsOnFirstExitClass() throws Exception {
+        final String agent = ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .filter(argument -> argument.startsWith("-javaagent:") && argument.contains("junit5-system-exit"))
+                .findFirst()
+                .orElseThrow();
+        final Process process = new ProcessBuilder(List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                agent,
+                "-verbose:class",
+                "-cp",
+                System.getProperty("java.class.path"),
+                LoadsExitClass.class.getName()
+        )).redirectErrorStream(true).start();
+        final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+
+        assertEquals(0, process.exitValue(), output);
+        final int marker = output.indexOf(LoadsExitClass.MARKER);
+        assertTrue(marker >= 0, output);
+        // The JDK has its own copy of ASM, in a package of its own
+        assertThat(output.substring(0, marker)).doesNotContain(" org.objectweb.asm.");
+        assertThat(output.substring(marker)).contains(" org.objectweb.asm.ClassReader ");
+    }
+
+    @Test
+    @DisplayName("A failure to start the agent is tried again on the next class that calls System.exit()")
+    void retriesFailedStart() throws IOException {
+        final byte[] callsExit = classBytes(TestUtils.CallsExit.class);
+        final AtomicInteger attempts = new AtomicInteger();
+        final AgentBootstrap.LazyTransformer transformer = new AgentBootstrap.LazyTransformer(AgentOptions.parse(null)) {
+            @Override
+            Junit5SystemExitAgent.SystemExitClassTransformer startAgent() {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new NoClassDefFoundError("org/objectweb/asm/ClassVisitor");
+                }
+                return super.startAgent();
+            }
+        };
+
+        assertNull(transformer.transform(getClass().getClassLoader(), "example/bootstrap/First", null, null, callsExit));
+        assertNotNull(transformer.transform(getClass().getClassLoader(), "example/bootstrap/Second", null, null, callsExit));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    @DisplayName("The agent jar carries its own copy of ASM, relocated out of the way of any other")
+    void relocatesAsm() throws IOException {
+        final String agentJar = System.getProperty("junit5-system-exit.agentJar");
+        assumeTrue(agentJar != null, "The build names the agent jar");
+        try (final JarFile jar = new JarFile(agentJar)) {
+            assertNotNull(jar.getEntry("com/ginsberg/junit/exit/shaded/org/objectweb/asm/ClassReader.class"));
+            assertTrue(jar.stream().noneMatch(entry -> entry.getName().startsWith("org/objectweb/asm/")));
+            try (final InputStream in = jar.getInputStream(jar.getEntry("com/ginsberg/junit/exit/agent/Junit5SystemExitAgent.class"))) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.ISO_8859_1))
+                        .contains("com/ginsberg/junit/exit/shaded/org/objectweb/asm/ClassReader")
+                        .doesNotContain("Lorg/objectweb/asm/");
+            }
+        }
+    }
+
+    // Runs in its own JVM, with the agent started lazily
+    static class LoadsExitClass {
+        static final String MARKER = "Loading a class that calls System.exit()";
+
+        static class Exits {
+            static void exit(final int status) {
+                System.exit(status);
+            }
+        }
+
+        public static void main(final String[] args) throws Exception {
+            System.out.println(MARKER);
+            Class.forName(Exits.class.getName());
+        }
+    }
+}
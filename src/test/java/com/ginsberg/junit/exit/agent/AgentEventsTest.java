@@ -0,0 +1,121 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.SystemExitPreventedException;
+import com.ginsberg.junit.exit.TestUtils;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.ginsberg.junit.exit.TestUtils.classBytes;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgentEventsTest {
+
+    private static final String TRANSFORM_EVENT = "com.ginsberg.junit.exit.ClassTransform";
+    private static final String EXIT_EVENT = "com.ginsberg.junit.exit.SystemExitPrevented";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Events are disabled unless a recording turns them on")
+    void disabledByDefault() {
+        assertFalse(AgentEvents.isTransformEnabled());
+        assertFalse(AgentEvents.isExitPreventedEnabled());
+    }
+
+    @Test
+    @DisplayName("Transforming a class records its name, sizes, and whether it was rewritten")
+    void transformEvents() throws Exception {
+        final Junit5SystemExitAgent.SystemExitClassTransformer transformer =
+                Junit5SystemExitAgent.createTransformer(AgentOptions.parse(null));
+        final byte[] callsExit = classBytes(TestUtils.CallsExit.class);
+        final byte[] doesNotCallExit = classBytes(TestUtils.DoesNotCallExit.class);
+
+        final List<RecordedEvent> events = record(TRANSFORM_EVENT, () -> {
+            assertTrue(AgentEvents.isTransformEnabled());
+            transformer.transform(getClass().getClassLoader(), "example/CallsExit", null, null, callsExit);
+            transformer.transform(getClass().getClassLoader(), "example/DoesNotCallExit", null, null, doesNotCallExit);
+        }).stream()
+                // The agent running these tests also records classes the JVM loads during the recording.
+                .filter(event -> event.getString("className").startsWith("example/"))
+                .collect(Collectors.toList());
+
+        assertThat(events).hasSize(2);
+        assertEquals("example/CallsExit", events.get(0).getString("className"));
+        assertEquals(callsExit.length, events.get(0).getInt("bytesIn"));
+        assertTrue(events.get(0).getBoolean("rewritten"));
+        assertTrue(events.get(0).getInt("bytesOut") > 0);
+        assertEquals("example/DoesNotCallExit", events.get(1).getString("className"));
+        assertFalse(events.get(1).getBoolean("rewritten"));
+        assertEquals(0, events.get(1).getInt("bytesOut"));
+    }
+
+    @Test
+    @DisplayName("A prevented exit records its status code, caller, and test")
+    void exitPreventedEvents() throws Exception {
+        final AgentSystemExitHandlerStrategy strategy = new AgentSystemExitHandlerStrategy("[test:example]");
+
+        final List<RecordedEvent> events = record(EXIT_EVENT, () -> {
+            strategy.beforeTest();
+            try {
+                assertThrows(SystemExitPreventedException.class, () -> AgentSystemExitHandlerStrategy.handleExit(7));
+            } finally {
+                strategy.afterTest();
+            }
+        });
+
+        assertThat(events).hasSize(1);
+        assertEquals(7, events.get(0).getInt("statusCode"));
+        assertEquals("[test:example]", events.get(0).getString("testId"));
+        assertThat(events.get(0).getString("caller")).contains(AgentEventsTest.class.getName());
+    }
+
+    private List<RecordedEvent> record(final String eventName, final Runnable work) throws Exception {
+        final Path file = tempDir.resolve("recording.jfr");
+        try (final Recording recording = new Recording()) {
+            recording.enable(eventName).withoutStackTrace();
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(eventName))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.SystemExitPreventedException;
+import com.ginsberg.junit.exit.TestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static com.ginsberg.junit.exit.TestUtils.classBytes;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgentMetricsTest {
+
+    // Metrics are shared by the whole JVM, and other tests may be loading classes, so only check they went up.
+    private final AgentMetrics metrics = AgentMetrics.metrics();
+
+    @Test
+    @DisplayName("Transforming classes updates the class counters")
+    void countsClasses() throws Exception {
+        final Junit5SystemExitAgent.SystemExitClassTransformer transformer =
+                Junit5SystemExitAgent.createTransformer(AgentOptions.parse("exclude=example.excluded"));
+        final byte[] callsExit = classBytes(TestUtils.CallsExit.class);
+        final long seen = metrics.getClassesSeen();
+        final long filtered = metrics.getClassesFiltered();
+        final long scanned = metrics.getClassesScanned();
+        final long rewritten = metrics.getClassesRewritten();
+        final long callSites = metrics.getCallSitesRewritten();
+        final long cacheHits = metrics.getCacheHits();
+
+        transformer.transform(getClass().getClassLoader(), "example/excluded/CallsExit", null, null, callsExit);
+        transformer.transform(getClass().getClassLoader(), "example/CallsExit", null, null, callsExit);
+        transformer.transform(getClass().getClassLoader(), "example/CallsExit", null, null, callsExit);
+
+        assertThat(metrics.getClassesSeen()).isGreaterThanOrEqualTo(seen + 3);
+        assertThat(metrics.getClassesFiltered()).isGreaterThanOrEqualTo(filtered + 1);
+        assertThat(metrics.getClassesScanned()).isGreaterThanOrEqualTo(scanned + 2);
+        assertThat(metrics.getClassesRewritten()).isGreaterThanOrEqualTo(rewritten + 1);
+        assertThat(metrics.getCallSitesRewritten()).isGreaterThanOrEqualTo(callSites + 1);
+        assertThat(metrics.getCacheHits()).isGreaterThanOrEqualTo(cacheHits + 1);
+        assertThat(metrics.getTransformNanosTotal()).isPositive();
+        assertThat(metrics.getTransformNanosMax()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Prevented exits are counted by status code")
+    void countsPreventedExits() {
+        final long before = metrics.getPreventedExits().getOrDefault(213, 0L);
+        final AgentSystemExitHandlerStrategy strategy = new AgentSystemExitHandlerStrategy();
+        strategy.beforeTest();
+        try {
+            assertThrows(SystemExitPreventedException.class, () -> AgentSystemExitHandlerStrategy.handleExit(213));
+            assertThrows(SystemExitPreventedException.class, () -> AgentSystemExitHandlerStrategy.handleExit(213));
+        } finally {
+            strategy.afterTest();
+        }
+
+        assertEquals(before + 2, metrics.getPreventedExits().get(213));
+        assertThat(metrics.summary()).startsWith("junit5-system-exit: classes seen=").contains("213=");
+    }
+
+    @Test
+    @DisplayName("Metrics can be read through the platform MBean server")
+    void registersMBean() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(AgentMetrics.OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            metrics.registerMBean();
+        }
+
+        assertTrue(server.isRegistered(name));
+        assertThat((Long) server.getAttribute(name, "ClassesSeen")).isGreaterThanOrEqualTo(0L);
+    }
+}
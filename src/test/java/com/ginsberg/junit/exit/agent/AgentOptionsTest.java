@@ -0,0 +1,60 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgentOptionsTest {
+
+    @Test
+    @DisplayName("Package names become internal name prefixes that end at the package")
+    void packageNamePrefixes() {
+        final AgentOptions options = AgentOptions.parse("include=com.acme,include=org.example.,include=acme");
+        assertEquals(List.of("com/acme/", "org/example/", "acme/"), options.getClassPrefixes(AgentOptions.INCLUDE));
+    }
+
+    @Test
+    @DisplayName("Internal name prefixes are used as written")
+    void internalNamePrefixes() {
+        final AgentOptions options = AgentOptions.parse("include=com/acme/,include=com/acme/Main");
+        assertEquals(List.of("com/acme/", "com/acme/Main"), options.getClassPrefixes(AgentOptions.INCLUDE));
+    }
+
+    @Test
+    @DisplayName("A package name does not cover a sibling package that shares its prefix")
+    void siblingPackage() {
+        final PrefixMatcher matcher = PrefixMatcher.of(AgentOptions.parse("include=com.acme").getClassPrefixes(AgentOptions.INCLUDE));
+        assertTrue(matcher.matches("com/acme/Main"));
+        assertTrue(matcher.matches("com/acme/cli/Main"));
+        assertFalse(matcher.matches("com/acmecorp/Other"));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.ExitAttempt;
+import com.ginsberg.junit.exit.SystemExitPreventedException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AgentSystemExitHandlerStrategyTest {
+
+    @Test
+    @DisplayName("Prevented exits record the frame that called System.exit()")
+    void recordsCaller() {
+        final ExitAttempt attempt = preventExit();
+        assertEquals(AgentSystemExitHandlerStrategyTest.class.getName(), attempt.getCallerClassName());
+        assertEquals("callsExit", attempt.getCallerMethodName());
+    }
+
+    @Test
+    @DisplayName("Without stack traces, prevented exits don't look for their caller")
+    void stacklessSkipsCaller() {
+        AgentSystemExitHandlerStrategy.captureStackTraces(false);
+        try {
+            final ExitAttempt attempt = preventExit();
+            assertEquals(4, attempt.getStatusCode());
+            assertNull(attempt.getCallerClassName());
+        } finally {
+            AgentSystemExitHandlerStrategy.captureStackTraces(true);
+        }
+    }
+
+    private static ExitAttempt preventExit() {
+        final AgentSystemExitHandlerStrategy strategy = new AgentSystemExitHandlerStrategy();
+        strategy.beforeTest();
+        try {
+            final SystemExitPreventedException prevented = assertThrows(
+                    SystemExitPreventedException.class,
+                    AgentSystemExitHandlerStrategyTest::callsExit
+            );
+            assertEquals(4, prevented.getStatusCode());
+        } finally {
+            strategy.afterTest();
+        }
+        assertEquals(1, strategy.exitAttempts().size());
+        return strategy.exitAttempts().get(0);
+    }
+
+    // Stands in for a rewritten call to System.exit()
+    private static void callsExit() {
+        AgentSystemExitHandlerStrategy.handleExit(4);
+    }
+}
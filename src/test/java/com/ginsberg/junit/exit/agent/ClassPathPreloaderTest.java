@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.TestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarOutputStream;
+
+import static com.ginsberg.junit.exit.TestUtils.classBytes;
+import static com.ginsberg.junit.exit.TestUtils.putEntry;
+import static com.ginsberg.junit.exit.TestUtils.write;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassPathPreloaderTest {
+
+    private final Junit5SystemExitAgent.SystemExitClassTransformer transformer =
+            Junit5SystemExitAgent.createTransformer(AgentOptions.parse(null));
+    private final AgentMetrics metrics = AgentMetrics.metrics();
+
+    @Test
+    @DisplayName("Classes preloaded from a directory are handed back without being rewritten again")
+    void preloadsDirectory(@TempDir final Path classes) throws IOException {
+        final byte[] callsExit = classBytes(TestUtils.CallsExit.class);
+        write(classes.resolve("example/preload/directory/CallsExit.class"), callsExit);
+
+        new ClassPathPreloader(transformer).preload(classes);
+
+        assertPreloaded("example/preload/directory/CallsExit", callsExit);
+    }
+
+    @Test
+    @DisplayName("Classes preloaded from a jar are handed back without being rewritten again")
+    void preloadsJar(@TempDir final Path directory) throws IOException {
+        final byte[] callsExit = classBytes(TestUtils.CallsExit.class);
+        final byte[] doesNotCallExit = classBytes(TestUtils.DoesNotCallExit.class);
+        final Path jar = directory.resolve("classes.jar");
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = new JarOutputStream(out)) {
+            putEntry(jarOut, "example/preload/jar/CallsExit.class", callsExit);
+            putEntry(jarOut, "example/preload/jar/DoesNotCallExit.class", doesNotCallExit);
+        }
+
+        new ClassPathPreloader(transformer).preload(jar);
+
+        assertPreloaded("example/preload/jar/CallsExit", callsExit);
+        assertNull(transformer.transform(getClass().getClassLoader(), "example/preload/jar/DoesNotCallExit", null, null, doesNotCallExit));
+    }
+
+    @Test
+    @DisplayName("Preloaded classes are only counted as rewritten once they are loaded")
+    void countsWhenLoaded(@TempDir final Path classes) throws IOException {
+        final byte[] callsExit = classBytes(TestUtils.CallsExit.class);
+        write(classes.resolve("example/preload/counted/CallsExit.class"), callsExit);
+        final long rewritten = metrics.getClassesRewritten();
+
+        new ClassPathPreloader(transformer).preload(classes);
+        assertEquals(rewritten, metrics.getClassesRewritten());
+
+        transformer.transform(getClass().getClassLoader(), "example/preload/counted/CallsExit", null, null, callsExit);
+        assertThat(metrics.getClassesRewritten()).isGreaterThan(rewritten);
+    }
+
+    @Test
+    @DisplayName("Entries that don't exist are ignored")
+    void missingEntry(@TempDir final Path directory) {
+        new ClassPathPreloader(transformer).preload(directory.resolve("missing.jar"));
+    }
+
+    // Nothing has loaded the class yet, so the transformer can only have seen it through the preloader.
+    private void assertPreloaded(final String className, final byte[] original) {
+        assertTrue(transformer.hasRewritten(className));
+        assertNotNull(transformer.transform(getClass().getClassLoader(), className, null, null, original));
+    }
+}
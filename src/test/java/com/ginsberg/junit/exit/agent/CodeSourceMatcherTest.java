@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.TestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.List;
+
+import static com.ginsberg.junit.exit.TestUtils.classBytes;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodeSourceMatcherTest {
+
+    private final CodeSourceMatcher matcher = CodeSourceMatcher.of(
+            List.of("build/classes/**", "**/acme-*.jar"),
+            List.of("**/acme-generated-*.jar")
+    );
+
+    @Test
+    @DisplayName("Relative globs match anywhere in the path")
+    void matchesRelativeGlob() {
+        assertTrue(matcher.matches(Paths.get("/work/app/build/classes/java/main")));
+        assertTrue(matcher.matches(Paths.get("/home/me/.m2/acme-core-1.0.jar")));
+    }
+
+    @Test
+    @DisplayName("Excluded code sources don't match, even when included")
+    void excludeWins() {
+        assertFalse(matcher.matches(Paths.get("/home/me/.m2/acme-generated-1.0.jar")));
+    }
+
+    @Test
+    @DisplayName("Code sources not included don't match")
+    void doesNotMatch() {
+        assertFalse(matcher.matches(Paths.get("/home/me/.m2/junit-jupiter-api-5.11.0.jar")));
+        assertFalse(matcher.matches(Paths.get("/work/app/build/resources/main")));
+    }
+
+    @Test
+    @DisplayName("Unknown and non-file code sources are only matched when nothing is included")
+    void unknownCodeSource() throws IOException {
+        assertFalse(matcher.matches((Path) null));
+        assertFalse(matcher.matches(new URL("jrt:/java.base")));
+        assertTrue(CodeSourceMatcher.of(List.of(), List.of("**/*.jar")).matches((URL) null));
+    }
+
+    @Test
+    @DisplayName("Everything matches an empty matcher")
+    void emptyMatcher() {
+        final CodeSourceMatcher empty = CodeSourceMatcher.of(List.of(), List.of());
+        assertTrue(empty.isEmpty());
+        assertTrue(empty.matches(Paths.get("/home/me/.m2/junit-jupiter-api-5.11.0.jar")));
+    }
+
+    @Test
+    @DisplayName("Transformer only rewrites classes from included code sources")
+    void transformerScopesByCodeSource() throws IOException {
+        final byte[] callsExit = classBytes(TestUtils.CallsExit.class);
+        final Junit5SystemExitAgent.SystemExitClassTransformer transformer = Junit5SystemExitAgent.createTransformer(
+                AgentOptions.parse("includeCodeSource=build/classes/**")
+        );
+        final ClassLoader loader = getClass().getClassLoader();
+
+        assertNotNull(transformer.transform(loader, "example/scope/Included", null, domain("/work/app/build/classes/java/main/"), callsExit));
+        assertNull(transformer.transform(loader, "example/scope/Excluded", null, domain("/work/lib/infrastructure.jar"), callsExit));
+        assertNull(transformer.transform(loader, "example/scope/Unknown", null, null, callsExit));
+    }
+
+    @Test
+    @DisplayName("Transformer skips classes from the bootstrap and platform class loaders")
+    void transformerSkipsJdkLoaders() throws IOException {
+        final byte[] callsExit = classBytes(TestUtils.CallsExit.class);
+        final Junit5SystemExitAgent.SystemExitClassTransformer transformer =
+                Junit5SystemExitAgent.createTransformer(AgentOptions.parse(null));
+
+        assertNull(transformer.transform(null, "example/scope/Bootstrap", null, null, callsExit));
+        assertNull(transformer.transform(ClassLoader.getPlatformClassLoader(), "example/scope/Platform", null, null, callsExit));
+        assertNotNull(transformer.transform(getClass().getClassLoader(), "example/scope/Application", null, null, callsExit));
+    }
+
+    private static ProtectionDomain domain(final String location) throws IOException {
+        return new ProtectionDomain(new CodeSource(Paths.get(location).toUri().toURL(), (Certificate[]) null), null);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.TestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.function.IntConsumer;
+
+import static com.ginsberg.junit.exit.TestUtils.classBytes;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ConstantPoolScannerTest {
+
+    @Test
+    @DisplayName("Class calling System.exit() is found")
+    void findsDirectCall() throws IOException {
+        assertTrue(ConstantPoolScanner.referencesSystemExit(classBytes(TestUtils.CallsExit.class)));
+    }
+
+    @Test
+    @DisplayName("Class with a method reference to System.exit() is found")
+    void findsMethodReference() throws IOException {
+        assertTrue(ConstantPoolScanner.referencesSystemExit(classBytes(ReferencesExit.class)));
+    }
+
+    @Test
+    @DisplayName("Class not calling System.exit() is not found")
+    void ignoresClassWithoutExit() throws IOException {
+        assertFalse(ConstantPoolScanner.referencesSystemExit(classBytes(TestUtils.DoesNotCallExit.class)));
+    }
+
+    @Test
+    @DisplayName("Class calling other methods on System is not found")
+    void ignoresOtherSystemMethods() throws IOException {
+        assertFalse(ConstantPoolScanner.referencesSystemExit(classBytes(CallsOtherSystemMethods.class)));
+    }
+
+    @Test
+    @DisplayName("Bytes that are not a class file are left for ASM to handle")
+    void unreadableClassFile() {
+        assertTrue(ConstantPoolScanner.referencesSystemExit(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    @DisplayName("Offsets left over from scanning one class don't affect the next")
+    void reusesOffsets() throws IOException {
+        final byte[] callsExit = classBytes(TestUtils.CallsExit.class);
+        final byte[] doesNotCallExit = classBytes(TestUtils.DoesNotCallExit.class);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(ConstantPoolScanner.referencesSystemExit(callsExit));
+            assertFalse(ConstantPoolScanner.referencesSystemExit(doesNotCallExit));
+        }
+    }
+
+    @Test
+    @DisplayName("Scanning does not allocate once a thread has scanned a class")
+    void doesNotAllocate() throws IOException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final byte[] doesNotCallExit = classBytes(TestUtils.DoesNotCallExit.class);
+        ConstantPoolScanner.referencesSystemExit(doesNotCallExit);
+
+        final long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            ConstantPoolScanner.referencesSystemExit(doesNotCallExit);
+        }
+        // Allow for a little noise from the measurement itself, far less than one array per scan.
+        assertTrue(threads.getCurrentThreadAllocatedBytes() - before < 1024);
+    }
+
+    static class ReferencesExit {
+        IntConsumer exit() {
+            return System::exit;
+        }
+    }
+
+    static class CallsOtherSystemMethods {
+        long now() {
+            System.gc();
+            return System.currentTimeMillis();
+        }
+    }
+}
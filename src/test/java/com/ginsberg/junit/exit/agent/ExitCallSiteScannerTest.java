@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.TestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+
+import static com.ginsberg.junit.exit.TestUtils.classBytes;
+import static com.ginsberg.junit.exit.TestUtils.putEntry;
+import static com.ginsberg.junit.exit.TestUtils.write;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExitCallSiteScannerTest {
+
+    @Test
+    @DisplayName("Call sites in a directory are reported with their method and line")
+    void scansDirectory(@TempDir final Path input) throws IOException {
+        write(input.resolve("com/acme/ExitsTwice.class"), classBytes(ExitsTwice.class));
+        write(input.resolve("com/acme/DoesNotCallExit.class"), classBytes(TestUtils.DoesNotCallExit.class));
+
+        final ExitCallSiteScanner scanner = new ExitCallSiteScanner();
+        final List<ExitCallSiteScanner.CallSite> callSites = scanner.scan(List.of(input));
+
+        assertEquals(2, callSites.size());
+        assertEquals(ExitsTwice.class.getName(), callSites.get(0).getClassName());
+        assertEquals("first", callSites.get(0).getMethodName());
+        assertEquals("()V", callSites.get(0).getMethodDescriptor());
+        assertEquals("second", callSites.get(1).getMethodName());
+        assertEquals(callSites.get(0).getLine() + 4, callSites.get(1).getLine());
+        assertEquals(2, scanner.getClassesSeen());
+        assertEquals(1, scanner.getClassesScanned());
+    }
+
+    @Test
+    @DisplayName("Call sites are named after the class, not where the scan started")
+    void scansBelowClassRoot(@TempDir final Path input) throws IOException {
+        write(input.resolve("com/acme/ExitsTwice.class"), classBytes(ExitsTwice.class));
+
+        final List<ExitCallSiteScanner.CallSite> callSites = new ExitCallSiteScanner().scan(List.of(input.resolve("com")));
+
+        assertEquals(2, callSites.size());
+        assertEquals(ExitsTwice.class.getName(), callSites.get(0).getClassName());
+    }
+
+    @Test
+    @DisplayName("Classes and methods marked @DoNotRewriteExitCalls are not reported")
+    void honorsSkipAnnotation(@TempDir final Path input) throws IOException {
+        final Path jar = input.resolve("app.jar");
+        try (final OutputStream out = Files.newOutputStream(jar);
+             final JarOutputStream jarOut = new JarOutputStream(out)) {
+            putEntry(jarOut, "com/acme/SkippedClass.class", classBytes(SkippedClass.class));
+            putEntry(jarOut, "com/acme/SkippedMethod.class", classBytes(SkippedMethod.class));
+        }
+
+        final List<ExitCallSiteScanner.CallSite> callSites = new ExitCallSiteScanner().scan(List.of(jar));
+
+        assertEquals(1, callSites.size());
+        assertEquals("reported", callSites.get(0).getMethodName());
+    }
+
+    @Test
+    @DisplayName("Report is written as JSON")
+    void writesJson(@TempDir final Path input) throws IOException {
+        write(input.resolve(ExitsTwice.class.getName().replace('.', '/') + ".class"), classBytes(ExitsTwice.class));
+        final Path report = input.resolve("report/exits.json");
+
+        ExitCallSiteScanner.main(new String[]{input.toString(), "--output", report.toString()});
+
+        assertThat(Files.readString(report))
+                .contains("\"classesSeen\": 1")
+                .contains("\"class\": \"" + ExitsTwice.class.getName() + "\"")
+                .contains("\"method\": \"second\"");
+    }
+
+    static class ExitsTwice {
+        void first() {
+            System.exit(1);
+        }
+
+        void second() {
+            System.exit(2);
+        }
+    }
+
+    @DoNotRewriteExitCalls
+    static class SkippedClass {
+        void skipped() {
+            System.exit(1);
+        }
+    }
+
+    static class SkippedMethod {
+        @DoNotRewriteExitCalls
+        void skipped() {
+            System.exit(1);
+        }
+
+        void reported() {
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.TestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import static com.ginsberg.junit.exit.TestUtils.classBytes;
+import static com.ginsberg.junit.exit.assertions.SystemExitAssertion.assertThatCallsSystemExit;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExitCallSiteTest {
+
+    @Test
+    @DisplayName("System.exit() rewritten as invokedynamic is caught while a test is running")
+    void invokeDynamicCallSiteIsCaught() throws Exception {
+        final byte[] original = classBytes(TestUtils.CallsExit.class);
+        final byte[] rewritten = Junit5SystemExitAgent.rewrite(
+                "com/ginsberg/junit/exit/TestUtils$CallsExit",
+                original,
+                CallSiteMode.INVOKE_DYNAMIC
+        );
+        assertThat(ConstantPoolScanner.referencesSystemExit(rewritten)).isFalse();
+
+        final Class<?> callsExit = new SingleClassLoader(rewritten).loadClass(TestUtils.CallsExit.class.getName());
+        final Method exit = callsExit.getDeclaredMethod("exit");
+        exit.setAccessible(true);
+        final Object instance = newInstance(callsExit);
+
+        assertThatCallsSystemExit(() -> invoke(exit, instance)).withExitCode(1);
+    }
+
+    private static Object newInstance(final Class<?> clazz) throws ReflectiveOperationException {
+        final var constructor = clazz.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    // Unwrap the exception from reflection so the assertion sees it as it would a direct call.
+    private static void invoke(final Method method, final Object instance) {
+        try {
+            method.invoke(instance);
+        } catch (final InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Defines one rewritten class itself, and delegates everything else to the test class loader.
+    private static class SingleClassLoader extends ClassLoader {
+        private final byte[] classFile;
+
+        SingleClassLoader(final byte[] classFile) {
+            super(ExitCallSiteTest.class.getClassLoader());
+            this.classFile = classFile;
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if (name.equals(TestUtils.CallsExit.class.getName())) {
+                synchronized (getClassLoadingLock(name)) {
+                    final Class<?> loaded = findLoadedClass(name);
+                    return loaded != null ? loaded : defineClass(name, classFile, 0, classFile.length);
+                }
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.TestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+
+import static com.ginsberg.junit.exit.TestUtils.classBytes;
+import static com.ginsberg.junit.exit.TestUtils.putEntry;
+import static com.ginsberg.junit.exit.TestUtils.write;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExitClassIndexTest {
+
+    private static final String CALLS_EXIT = internalName(TestUtils.CallsExit.class);
+    private static final String DOES_NOT_CALL_EXIT = internalName(TestUtils.DoesNotCallExit.class);
+
+    @Test
+    @DisplayName("Index written into a directory lists only classes that call System.exit()")
+    void indexesDirectory(@TempDir final Path classes) throws IOException {
+        write(classes.resolve(CALLS_EXIT + ".class"), classBytes(TestUtils.CallsExit.class));
+        write(classes.resolve(DOES_NOT_CALL_EXIT + ".class"), classBytes(TestUtils.DoesNotCallExit.class));
+
+        ExitClassIndexer.index(classes);
+        final ExitClassIndex index = ExitClassIndex.read(classes.toUri().toURL());
+
+        assertTrue(index.isPresent());
+        assertTrue(index.contains(CALLS_EXIT));
+        assertFalse(index.contains(DOES_NOT_CALL_EXIT));
+    }
+
+    @Test
+    @DisplayName("Index is added to a jar in place")
+    void indexesJar(@TempDir final Path directory) throws IOException {
+        final Path jar = directory.resolve("app.jar");
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = new JarOutputStream(out)) {
+            putEntry(jarOut, CALLS_EXIT + ".class", classBytes(TestUtils.CallsExit.class));
+        }
+
+        ExitClassIndexer.index(jar);
+
+        assertTrue(ExitClassIndex.read(jar.toUri().toURL()).contains(CALLS_EXIT));
+    }
+
+    @Test
+    @DisplayName("Locations without a readable index are scanned as usual")
+    void missingOrUnrecognizedIndex(@TempDir final Path classes) throws IOException {
+        assertSame(ExitClassIndex.NONE, ExitClassIndex.read(classes.toUri().toURL()));
+
+        write(classes.resolve(ExitClassIndex.RESOURCE), "not an index".getBytes(StandardCharsets.UTF_8));
+
+        assertSame(ExitClassIndex.NONE, ExitClassIndex.read(classes.toUri().toURL()));
+    }
+
+    @Test
+    @DisplayName("Transformer trusts the index of the location a class is loaded from")
+    void transformerUsesIndex(@TempDir final Path indexed, @TempDir final Path unindexed) throws IOException {
+        final byte[] callsExit = classBytes(TestUtils.CallsExit.class);
+        write(indexed.resolve(ExitClassIndex.RESOURCE), ExitClassIndex.of(List.of()).toBytes());
+        final Junit5SystemExitAgent.SystemExitClassTransformer transformer =
+                Junit5SystemExitAgent.createTransformer(AgentOptions.parse(null));
+
+        assertNull(transformer.transform(getClass().getClassLoader(), "example/index/Indexed", null, domain(indexed), callsExit));
+        assertNotNull(transformer.transform(getClass().getClassLoader(), "example/index/Unindexed", null, domain(unindexed), callsExit));
+    }
+
+    @Test
+    @DisplayName("Index names classes by their own names when indexing below the class root")
+    void indexesBelowClassRoot(@TempDir final Path classes) throws IOException {
+        write(classes.resolve(CALLS_EXIT + ".class"), classBytes(TestUtils.CallsExit.class));
+
+        assertTrue(ExitClassIndexer.index(classes.resolve("com")).contains(CALLS_EXIT));
+    }
+
+    private static String internalName(final Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    private static ProtectionDomain domain(final Path location) throws IOException {
+        return new ProtectionDomain(new CodeSource(location.toUri().toURL(), (Certificate[]) null), null);
+    }
+}
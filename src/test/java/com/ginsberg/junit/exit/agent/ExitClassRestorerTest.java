@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.SystemExitPreventedException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExitClassRestorerTest {
+
+    @Test
+    @DisplayName("Classes are rewritten only while tests run, and restored once they have all finished")
+    void restoresAfterTests() throws Exception {
+        final String agent = ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .filter(argument -> argument.startsWith("-javaagent:") && argument.contains("junit5-system-exit"))
+                .findFirst()
+                .orElseThrow();
+        final Process process = new ProcessBuilder(List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                agent + (agent.contains("=") ? "," : "=") + "restore=true",
+                "-cp",
+                System.getProperty("java.class.path"),
+                RunsTestsThenExits.class.getName()
+        )).redirectErrorStream(true).start();
+        final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+
+        assertEquals(7, process.exitValue(), output);
+        assertThat(output).contains(
+                "rewritten before tests: 0",
+                "prevented 3",
+                "rewritten after tests: 1",
+                "exited through handler: false"
+        );
+    }
+
+    // Runs in its own JVM, with the agent in restore mode
+    static class RunsTestsThenExits {
+        static class Exits {
+            static void exit(final int status) {
+                System.exit(status);
+            }
+        }
+
+        public static void main(final String[] args) throws Exception {
+            Class.forName(Exits.class.getName());
+            System.out.println("rewritten before tests: " + AgentMetrics.metrics().getClassesRewritten());
+            for (int i = 0; i < 3; i++) {
+                final AgentSystemExitHandlerStrategy strategy = new AgentSystemExitHandlerStrategy();
+                strategy.beforeTest();
+                try {
+                    Exits.exit(3);
+                } catch (final SystemExitPreventedException e) {
+                    System.out.println("prevented " + e.getStatusCode());
+                } finally {
+                    strategy.afterTest();
+                }
+            }
+            // Rewritten once, and kept that way between the tests
+            System.out.println("rewritten after tests: " + AgentMetrics.metrics().getClassesRewritten());
+
+            Thread.sleep(1000);
+            final Thread main = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(
+                    "exited through handler: " + Arrays.toString(main.getStackTrace()).contains("handleExit")
+            )));
+            Exits.exit(7);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.agent;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExitCoverageTest {
+
+    @Test
+    @DisplayName("Rewriting the same call site again reuses its probe")
+    void reusesProbe() {
+        final int first = ExitCoverage.register("com/acme/Reused", 0, "main", "([Ljava/lang/String;)V", 10);
+        final int second = ExitCoverage.register("com/acme/Reused", 1, "main", "([Ljava/lang/String;)V", 12);
+
+        assertNotEquals(first, second);
+        assertEquals(first, ExitCoverage.register("com/acme/Reused", 0, "main", "([Ljava/lang/String;)V", 10));
+    }
+
+    @Test
+    @DisplayName("Report lists only call sites that were not hit")
+    void reportsUnexercisedSites() {
+        final int hit = ExitCoverage.register("com/acme/Reported", 0, "run", "()V", 20);
+        ExitCoverage.register("com/acme/Reported", 1, "stop", "(I)V", 30);
+        ExitCoverage.loaded("com/acme/Reported");
+
+        ExitCoverage.hit(hit);
+        ExitCoverage.hit(hit);
+
+        assertThat(ExitCoverage.report())
+                .contains("Not exercised: com.acme.Reported.stop(I)V line 30")
+                .doesNotContain("com.acme.Reported.run");
+        assertTrue(ExitCoverage.probes().stream()
+                .anyMatch(probe -> probe.getClassName().equals("com.acme.Reported") && probe.getHits() == 2));
+    }
+
+    @Test
+    @DisplayName("Call sites are only reported once their class has been loaded")
+    void reportsLoadedClasses() {
+        ExitCoverage.register("com/acme/Preloaded", 0, "run", "()V", 40);
+        assertThat(ExitCoverage.report()).doesNotContain("com.acme.Preloaded");
+
+        ExitCoverage.loaded("com/acme/Preloaded");
+        assertThat(ExitCoverage.report()).contains("Not exercised: com.acme.Preloaded.run()V line 40");
+    }
+
+    @Test
+    @DisplayName("Probes keep their counts as more call sites are registered")
+    void growsProbes() {
+        final int first = ExitCoverage.register("com/acme/Grows", 0, "run", "()V", 1);
+        ExitCoverage.hit(first);
+        for (int i = 1; i <= 1000; i++) {
+            ExitCoverage.register("com/acme/Grows", i, "run", "()V", i + 1);
+        }
+        ExitCoverage.loaded("com/acme/Grows");
+
+        assertTrue(ExitCoverage.probes().stream()
+                .anyMatch(probe -> probe.getClassName().equals("com.acme.Grows") && probe.getLine() == 1 && probe.getHits() == 1));
+    }
+}
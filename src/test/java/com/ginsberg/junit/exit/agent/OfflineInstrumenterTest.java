@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import com.ginsberg.junit.exit.TestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static com.ginsberg.junit.exit.TestUtils.classBytes;
+import static com.ginsberg.junit.exit.TestUtils.putEntry;
+import static com.ginsberg.junit.exit.TestUtils.write;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OfflineInstrumenterTest {
+
+    private static final String CALLS_EXIT = "com/acme/CallsExit.class";
+    private static final String DOES_NOT_CALL_EXIT = "com/acme/DoesNotCallExit.class";
+
+    @Test
+    @DisplayName("Classes in a directory are rewritten, everything else is copied")
+    void instrumentsDirectory(@TempDir final Path input, @TempDir final Path output) throws IOException {
+        final byte[] callsExit = classBytes(TestUtils.CallsExit.class);
+        final byte[] doesNotCallExit = classBytes(TestUtils.DoesNotCallExit.class);
+        write(input.resolve(CALLS_EXIT), callsExit);
+        write(input.resolve(DOES_NOT_CALL_EXIT), doesNotCallExit);
+        write(input.resolve("application.properties"), "a=b".getBytes(StandardCharsets.UTF_8));
+
+        new OfflineInstrumenter().instrument(input, output);
+
+        assertThat(new String(Files.readAllBytes(output.resolve(CALLS_EXIT)), StandardCharsets.ISO_8859_1))
+                .contains("com/ginsberg/junit/exit/agent/AgentSystemExitHandlerStrategy");
+        assertThat(output.resolve(DOES_NOT_CALL_EXIT)).hasBinaryContent(doesNotCallExit);
+        assertThat(output.resolve("application.properties")).hasContent("a=b");
+        assertThat(output.resolve(AgentSystemExitHandlerStrategy.OFFLINE_MARKER)).exists();
+    }
+
+    @Test
+    @DisplayName("Classes in a jar are rewritten, other entries and the manifest are copied, and signatures dropped")
+    void instrumentsJar(@TempDir final Path directory) throws IOException {
+        final byte[] doesNotCallExit = classBytes(TestUtils.DoesNotCallExit.class);
+        final Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "com.acme.Main");
+        final Path input = directory.resolve("app.jar");
+        try (final OutputStream out = Files.newOutputStream(input);
+             final JarOutputStream jar = new JarOutputStream(out, manifest)) {
+            putEntry(jar, "META-INF/APP.SF", "Signature-Version: 1.0".getBytes(StandardCharsets.UTF_8));
+            putEntry(jar, "META-INF/APP.RSA", new byte[]{1, 2, 3});
+            putEntry(jar, CALLS_EXIT, classBytes(TestUtils.CallsExit.class));
+            putEntry(jar, DOES_NOT_CALL_EXIT, doesNotCallExit);
+            putEntry(jar, "application.properties", "a=b".getBytes(StandardCharsets.UTF_8));
+        }
+        final Path output = directory.resolve("instrumented/app.jar");
+
+        new OfflineInstrumenter().instrument(input, output);
+
+        try (final JarFile jar = new JarFile(output.toFile())) {
+            assertEquals("com.acme.Main", jar.getManifest().getMainAttributes().getValue(Attributes.Name.MAIN_CLASS));
+            assertThat(new String(entryBytes(jar, CALLS_EXIT), StandardCharsets.ISO_8859_1))
+                    .contains("com/ginsberg/junit/exit/agent/AgentSystemExitHandlerStrategy");
+            assertArrayEquals(doesNotCallExit, entryBytes(jar, DOES_NOT_CALL_EXIT));
+            assertEquals("a=b", new String(entryBytes(jar, "application.properties"), StandardCharsets.UTF_8));
+            assertNull(jar.getEntry("META-INF/APP.SF"));
+            assertNull(jar.getEntry("META-INF/APP.RSA"));
+            assertNotNull(jar.getEntry(AgentSystemExitHandlerStrategy.OFFLINE_MARKER));
+        }
+    }
+
+    private static byte[] entryBytes(final JarFile jar, final String name) throws IOException {
+        try (final InputStream in = jar.getInputStream(jar.getEntry(name))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefixMatcherTest {
+
+    private final PrefixMatcher matcher = PrefixMatcher.of(List.of("com/acme/", "com/acme/generated/", "java/", "org/b"));
+
+    @Test
+    @DisplayName("Names starting with a prefix match")
+    void matchesPrefix() {
+        assertTrue(matcher.matches("com/acme/Main"));
+        assertTrue(matcher.matches("java/lang/String"));
+        assertTrue(matcher.matches("org/b"));
+        assertTrue(matcher.matches("org/bar/Baz"));
+    }
+
+    @Test
+    @DisplayName("Names covered by a shorter prefix match")
+    void matchesRedundantPrefix() {
+        assertTrue(matcher.matches("com/acme/generated/Parser"));
+        assertTrue(matcher.matches("com/acme/z/Last"));
+    }
+
+    @Test
+    @DisplayName("Names not starting with any prefix do not match")
+    void doesNotMatch() {
+        assertFalse(matcher.matches("com/acm"));
+        assertFalse(matcher.matches("com/example/Main"));
+        assertFalse(matcher.matches("a/First"));
+        assertFalse(matcher.matches("org/a"));
+        assertFalse(matcher.matches("zzz/Last"));
+    }
+
+    @Test
+    @DisplayName("Nothing matches an empty matcher")
+    void emptyMatcher() {
+        assertFalse(PrefixMatcher.of(List.of()).matches("com/acme/Main"));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.agent;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TransformCacheTest {
+
+    private final byte[] original = {1, 2, 3};
+    private final byte[] rewritten = {4, 5, 6};
+
+    @Test
+    @DisplayName("Rewritten and unchanged classes are read back from the cache")
+    void readsBack() throws IOException {
+        final TransformCache cache = new TransformCache(Files.createTempDirectory("cache"), "fingerprint");
+        assertNull(cache.get(original));
+
+        cache.put(original, rewritten);
+        assertArrayEquals(rewritten, cache.get(original));
+
+        cache.put(rewritten, null);
+        assertSame(TransformCache.UNCHANGED, cache.get(rewritten));
+    }
+
+    @Test
+    @DisplayName("Caches with different fingerprints don't share entries")
+    void fingerprintsAreSeparate() throws IOException {
+        final Path directory = Files.createTempDirectory("cache");
+        new TransformCache(directory, "before").put(original, rewritten);
+        assertNull(new TransformCache(directory, "after").get(original));
+    }
+
+    @Test
+    @DisplayName("The agent's rewriting code can be hashed into the fingerprint")
+    void rewriterHash() {
+        final String hash = Junit5SystemExitAgent.rewriterHash();
+        assertNotNull(hash);
+        assertEquals(64, hash.length());
+        assertEquals(hash, Junit5SystemExitAgent.rewriterHash());
+    }
+}
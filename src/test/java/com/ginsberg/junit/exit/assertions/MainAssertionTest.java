@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.assertions;
+
+import org.junit.jupiter.api.Test;
+import org.opentest4j.AssertionFailedError;
+import org.opentest4j.MultipleFailuresError;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.ginsberg.junit.exit.assertions.MainAssertion.assertExitCodes;
+import static com.ginsberg.junit.exit.assertions.MainAssertion.assertThatMain;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MainAssertionTest {
+
+    @Test
+    void passesOnExpectedExitAndOutput() {
+        assertThatMain(Cli.class, "2", "Usage: cli <option>")
+                .callsSystemExit()
+                .withExitCode(2)
+                .withEmptyStderr()
+                .withStdout("Usage: cli <option>" + System.lineSeparator())
+                .withStdoutContaining("Usage")
+                .completedWithin(Duration.ofMinutes(1));
+    }
+
+    @Test
+    void passesWhenExitIsNotCalled() {
+        assertThatMain(Cli.class)
+                .doesNotCallSystemExit()
+                .withExitCode(0)
+                .withStderrContaining("nothing to do");
+    }
+
+    @Test
+    void failsOnWrongExitCode() {
+        assertThrows(AssertionFailedError.class, () -> assertThatMain(Cli.class, "2", "").withExitCode(1));
+    }
+
+    @Test
+    void failsOnUnexpectedExit() {
+        assertThrows(AssertionFailedError.class, () -> assertThatMain(Cli.class, "2", "").doesNotCallSystemExit());
+    }
+
+    @Test
+    void failsOnMissingExit() {
+        assertThrows(AssertionFailedError.class, () -> assertThatMain(Cli.class).callsSystemExit());
+    }
+
+    @Test
+    void failsOnWrongOutput() {
+        assertThrows(AssertionFailedError.class, () -> assertThatMain(Cli.class, "2", "Usage").withStdoutContaining("Help"));
+    }
+
+    @Test
+    void passesOnExpectedExitCodes() {
+        final Map<String[], Integer> cases = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            cases.put(new String[]{String.valueOf(i % 10), "case " + i}, i % 10);
+        }
+        assertExitCodes(Cli.class, cases);
+    }
+
+    @Test
+    void reportsEveryWrongExitCode() {
+        final Map<String[], Integer> cases = new LinkedHashMap<>();
+        cases.put(new String[]{"1", ""}, 1);
+        cases.put(new String[]{"2", ""}, 3);
+        cases.put(new String[]{"4", ""}, 4);
+        cases.put(new String[]{}, 5);
+
+        final MultipleFailuresError error = assertThrows(MultipleFailuresError.class, () -> assertExitCodes(Cli.class, cases));
+        assertThat(error.getFailures()).hasSize(2);
+    }
+
+    public static class Cli {
+        public static void main(final String[] args) {
+            if (args.length == 0) {
+                System.err.println("nothing to do");
+                return;
+            }
+            System.out.println(args[1]);
+            System.exit(Integer.parseInt(args[0]));
+        }
+    }
+}
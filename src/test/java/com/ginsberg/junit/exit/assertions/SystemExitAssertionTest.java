@@ -1,8 +1,16 @@
 package com.ginsberg.junit.exit.assertions;
 
+import com.ginsberg.junit.exit.ExitAttempt;
+import com.ginsberg.junit.exit.SystemExitPreventedException;
 import org.junit.jupiter.api.Test;
 import org.opentest4j.AssertionFailedError;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
 import static com.ginsberg.junit.exit.assertions.SystemExitAssertion.assertThatCallsSystemExit;
 import static com.ginsberg.junit.exit.assertions.SystemExitAssertion.assertThatDoesNotCallSystemExit;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -35,6 +43,66 @@ class SystemExitAssertionTest {
         }).withExitCode(4);
     }
 
+    @Test
+    void concurrentAssertionsAreIsolated() throws InterruptedException {
+        final int threads = 8;
+        final CyclicBarrier allRunning = new CyclicBarrier(threads);
+        final List<Throwable> failures = new CopyOnWriteArrayList<>();
+        final List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final int code = i;
+            final Thread worker = new Thread(() -> {
+                try {
+                    assertThatCallsSystemExit(() -> {
+                        awaitQuietly(allRunning);
+                        System.exit(code);
+                    }).withExitCode(code);
+                } catch (final Throwable e) {
+                    failures.add(e);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        assertThat(failures).isEmpty();
+    }
+
+    @Test
+    void countsEveryAttempt() {
+        assertThatCallsSystemExit(() -> {
+            try {
+                System.exit(1);
+            } catch (final SystemExitPreventedException e) {
+                // Code under test that swallows the exception and tries again
+            }
+            System.exit(2);
+        }).withExitCode(1).withAttemptCount(2);
+    }
+
+    @Test
+    void recordsCaller() {
+        final SystemExitAssertion assertion = assertThatCallsSystemExit(() -> exitWith(3))
+                .calledFrom(SystemExitAssertionTest.class, "exitWith");
+
+        final ExitAttempt attempt = assertion.getExitAttempts().get(0);
+        assertThat(attempt.getStatusCode()).isEqualTo(3);
+        assertThat(attempt.getThreadName()).isEqualTo(Thread.currentThread().getName());
+        assertThat(attempt.getCallerLineNumber()).isGreaterThan(0);
+    }
+
+    @Test
+    void wrongCaller() {
+        try {
+            assertThatCallsSystemExit(() -> exitWith(4)).calledFrom(String.class);
+            fail("Should have failed test when System.exit was called from a different class");
+        } catch (AssertionFailedError e) {
+            assertThat(e.getMessage()).startsWith("System.exit() called from wrong class");
+        }
+    }
+
     @Test
     void exitCodeDoesNotMatch() {
         try {
@@ -102,4 +170,16 @@ class SystemExitAssertionTest {
             assertThat(e.getMessage()).startsWith("Expected call to System.exit() did not happen");
         }
     }
-}
\ No newline at end of file
+
+    private static void exitWith(final int code) {
+        System.exit(code);
+    }
+
+    private static void awaitQuietly(final CyclicBarrier barrier) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
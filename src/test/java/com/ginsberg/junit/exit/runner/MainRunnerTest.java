@@ -0,0 +1,207 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ginsberg.junit.exit.runner;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MainRunnerTest {
+
+    private final MainRunner runner = MainRunner.of(Cli.class);
+
+    @Test
+    @DisplayName("Exit code and output are captured when main() calls System.exit()")
+    void callsExit() {
+        final MainResult result = runner.run("exit", "3");
+
+        assertTrue(result.calledSystemExit());
+        assertEquals(3, result.getExitCode());
+        assertEquals("exiting with 3" + System.lineSeparator(), result.getStdout());
+        assertEquals("bye" + System.lineSeparator(), result.getStderr());
+        assertNull(result.getThrown());
+        assertThat(result.getExitAttempts()).hasSize(1);
+        assertFalse(result.getElapsed().isNegative());
+    }
+
+    @Test
+    @DisplayName("A main() that returns normally has exit code 0")
+    void returnsNormally() {
+        final MainResult result = runner.run("hello");
+
+        assertFalse(result.calledSystemExit());
+        assertEquals(0, result.getExitCode());
+        assertEquals("hello" + System.lineSeparator(), result.getStdout());
+        assertEquals("", result.getStderr());
+    }
+
+    @Test
+    @DisplayName("A main() that throws has exit code 1 and the exception is kept")
+    void throwsException() {
+        final MainResult result = runner.run("throw");
+
+        assertFalse(result.calledSystemExit());
+        assertEquals(1, result.getExitCode());
+        assertThat(result.getThrown()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Output from threads started by main() is captured")
+    void childThreadOutput() {
+        final MainResult result = runner.run("thread");
+
+        assertEquals("from child" + System.lineSeparator(), result.getStdout());
+        assertEquals(4, result.getExitCode());
+    }
+
+    @Test
+    @DisplayName("Concurrent runs each see only their own exit code and output")
+    void concurrentRunsAreIsolated() throws InterruptedException {
+        final int threads = 8;
+        final CyclicBarrier allRunning = new CyclicBarrier(threads);
+        final List<Throwable> failures = new CopyOnWriteArrayList<>();
+        final List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final int code = i;
+            final Thread worker = new Thread(() -> {
+                try {
+                    allRunning.await();
+                    final MainResult result = runner.run("exit", String.valueOf(code));
+                    assertEquals(code, result.getExitCode());
+                    assertEquals("exiting with " + code + System.lineSeparator(), result.getStdout());
+                } catch (final Throwable e) {
+                    failures.add(e);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        assertThat(failures).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Runs share static state by default")
+    void sharedStaticState() {
+        final MainRunner shared = MainRunner.of(Counter.class);
+        final int first = shared.run().getExitCode();
+
+        assertEquals(first + 1, shared.run().getExitCode());
+        assertFalse(shared.isIsolated());
+    }
+
+    @Test
+    @DisplayName("Isolated runs each start with fresh static state and still have System.exit() prevented")
+    void isolatedStaticState() {
+        try (MainRunner isolated = MainRunner.of(Counter.class).isolated(2)) {
+            assertTrue(isolated.isIsolated());
+
+            for (int i = 0; i < 5; i++) {
+                final MainResult result = isolated.run();
+                assertTrue(result.calledSystemExit());
+                assertEquals(1, result.getExitCode());
+                assertEquals("count=1" + System.lineSeparator(), result.getStdout());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A closed isolated runner can't run main() again")
+    void closedIsolatedRunner() {
+        final MainRunner isolated = MainRunner.of(Counter.class).isolated(2);
+        isolated.close();
+
+        assertThrows(IllegalStateException.class, isolated::run);
+    }
+
+    @Test
+    @DisplayName("Closing a pool closes every class loader it prepared")
+    void closingPoolClosesLoaders() throws InterruptedException {
+        final IsolatedClassLoaderPool pool = new IsolatedClassLoaderPool(Counter.class, 3);
+        pool.discard(pool.take());
+        pool.close();
+
+        // Loaders being prepared in the background when the pool closed are closed as soon as they are ready.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pool.openLoaders() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.openLoaders());
+    }
+
+    @Test
+    @DisplayName("A class without a main() method is rejected")
+    void noMainMethod() {
+        assertThrows(IllegalArgumentException.class, () -> MainRunner.of(MainRunnerTest.class));
+    }
+
+    public static class Counter {
+        private static int count = 0;
+
+        public static void main(final String[] args) {
+            count++;
+            System.out.println("count=" + count);
+            System.exit(count);
+        }
+    }
+
+    public static class Cli {
+        public static void main(final String[] args) throws InterruptedException {
+            switch (args[0]) {
+                case "exit":
+                    System.out.println("exiting with " + args[1]);
+                    System.err.println("bye");
+                    System.exit(Integer.parseInt(args[1]));
+                    break;
+                case "throw":
+                    throw new IllegalStateException("Bad state");
+                case "thread":
+                    final Thread child = new Thread(() -> {
+                        System.out.println("from child");
+                        System.exit(4);
+                    });
+                    child.setUncaughtExceptionHandler((thread, e) -> { });
+                    child.start();
+                    child.join();
+                    break;
+                default:
+                    System.out.println(args[0]);
+            }
+        }
+    }
+}
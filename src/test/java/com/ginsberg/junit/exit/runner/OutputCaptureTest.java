@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2024 Todd Ginsberg
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.ginsberg.junit.exit.runner;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class OutputCaptureTest {
+
+    @Test
+    @DisplayName("The original streams are put back once no run is capturing")
+    void restoresStreams() {
+        final PrintStream out = System.out;
+        final PrintStream err = System.err;
+
+        final OutputCapture outer = OutputCapture.begin();
+        final OutputCapture inner = OutputCapture.begin();
+        assertNotSame(out, System.out);
+        assertNotSame(err, System.err);
+
+        inner.end();
+        assertNotSame(out, System.out);
+        outer.end();
+        assertSame(out, System.out);
+        assertSame(err, System.err);
+    }
+
+    @Test
+    @DisplayName("A stream that is already routed is not wrapped again")
+    void doesNotRewrap() {
+        final PrintStream out = System.out;
+        final PrintStream elsewhere = new PrintStream(new ByteArrayOutputStream(), true);
+
+        final OutputCapture first = OutputCapture.begin();
+        final PrintStream routed = System.out;
+        // Something else swaps System.out while a run is capturing, then puts back what it found.
+        System.setOut(elsewhere);
+        final OutputCapture second = OutputCapture.begin();
+        System.setOut(routed);
+        final OutputCapture third = OutputCapture.begin();
+        assertSame(routed, System.out);
+
+        System.out.print("captured");
+        third.end();
+        second.end();
+        first.end();
+        assertEquals("captured", third.stdout());
+        assertSame(out, System.out);
+    }
+}